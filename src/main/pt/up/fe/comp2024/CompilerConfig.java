@@ -2,14 +2,56 @@ package pt.up.fe.comp2024;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH = "batch";
+    private static final String THREADS = "threads";
+    private static final String SERVER = "server";
+    private static final String CONNECT = "connect";
+    private static final String CACHE = "cache";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String STATS = "stats";
+    private static final String CLASS_OUTPUT = "classOutput";
+    private static final String BACKEND = "backend";
+    private static final String COMPACT_AST = "compactAst";
+    private static final String STOP_AFTER = "stopAfter";
+    private static final String EMIT = "emit";
+    private static final String WATCH = "watch";
+
+    private static final int DEFAULT_SERVER_PORT = 7207;
+    private static final long DEFAULT_CACHE_SIZE_MB = 64;
+
+    public static final String JASMIN_BACKEND = "jasmin";
+    public static final String BYTECODE_BACKEND = "bytecode";
+
+    // Stages, in the order they run
+    public static final String PARSE_STAGE = "parse";
+    public static final String SEMANTIC_STAGE = "semantic";
+    public static final String OLLIR_STAGE = "ollir";
+    public static final String JASMIN_STAGE = "jasmin";
+    private static final List<String> STAGES = List.of(PARSE_STAGE, SEMANTIC_STAGE, OLLIR_STAGE, JASMIN_STAGE);
+
+    public static final String EMIT_AST = "ast";
+    public static final String EMIT_SYMBOLS = "symbols";
+    public static final String EMIT_OLLIR = "ollir";
+    public static final String EMIT_JASMIN = "jasmin";
+    public static final String EMIT_CLASS = "class";
+    // Stage that produces what each '-emit' value prints
+    private static final Map<String, String> EMIT_STAGES = Map.of(
+            EMIT_AST, PARSE_STAGE,
+            EMIT_SYMBOLS, SEMANTIC_STAGE,
+            EMIT_OLLIR, OLLIR_STAGE,
+            EMIT_JASMIN, JASMIN_STAGE,
+            EMIT_CLASS, JASMIN_STAGE);
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +60,19 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("batch", CompilerConfig.BATCH);
+        shortToLong.put("j", CompilerConfig.THREADS);
+        shortToLong.put("server", CompilerConfig.SERVER);
+        shortToLong.put("connect", CompilerConfig.CONNECT);
+        shortToLong.put("cache", CompilerConfig.CACHE);
+        shortToLong.put("cache-size", CompilerConfig.CACHE_SIZE);
+        shortToLong.put("stats", CompilerConfig.STATS);
+        shortToLong.put("d", CompilerConfig.CLASS_OUTPUT);
+        shortToLong.put("backend", CompilerConfig.BACKEND);
+        shortToLong.put("compact-ast", CompilerConfig.COMPACT_AST);
+        shortToLong.put("stop-after", CompilerConfig.STOP_AFTER);
+        shortToLong.put("emit", CompilerConfig.EMIT);
+        shortToLong.put("watch", CompilerConfig.WATCH);
     }
 
 
@@ -32,6 +87,10 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    public static void setInputFile(Map<String, String> config, File inputFile) {
+        config.put(INPUT_FILE, inputFile.getAbsolutePath());
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -41,6 +100,174 @@ public class CompilerConfig {
     }
 
 
+    /**
+     * @param config
+     * @return the directory, glob or manifest file given with '-batch', if any
+     */
+    public static Optional<String> getBatchInput(Map<String, String> config) {
+        return Optional.ofNullable(config.get(BATCH));
+    }
+
+    public static int getThreads(Map<String, String> config) {
+        var threads = config.get(THREADS);
+
+        if (threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        return Integer.parseInt(threads);
+    }
+
+    /**
+     * @param config
+     * @return the pool where the methods of a class are processed concurrently, or empty if '-j' is 1. Compilations
+     * that already run in a pool, e.g. in batch mode, share its threads
+     */
+    public static Optional<ForkJoinPool> getMethodPool(Map<String, String> config) {
+        if (getThreads(config) <= 1) {
+            return Optional.empty();
+        }
+
+        var pool = ForkJoinTask.getPool();
+        return Optional.of(pool != null ? pool : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param config
+     * @return the port where the compile server should listen, if '-server' was given
+     */
+    public static Optional<Integer> getServerPort(Map<String, String> config) {
+        return getPort(config, SERVER);
+    }
+
+    /**
+     * @param config
+     * @return the port of the compile server that should do the compilation, if '-connect' was given
+     */
+    public static Optional<Integer> getConnectPort(Map<String, String> config) {
+        return getPort(config, CONNECT);
+    }
+
+    private static Optional<Integer> getPort(Map<String, String> config, String option) {
+        var port = config.get(option);
+
+        if (port == null) {
+            return Optional.empty();
+        }
+
+        // Option given without a value, e.g. '-server'
+        if (port.equals("true")) {
+            return Optional.of(DEFAULT_SERVER_PORT);
+        }
+
+        return Optional.of(Integer.parseInt(port));
+    }
+
+    /**
+     * @param config
+     * @return the directory whose files are compiled whenever they change, if '-watch' was given
+     */
+    public static Optional<File> getWatchDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(WATCH)).map(File::new);
+    }
+
+    /**
+     * @param config
+     * @return the folder of the compilation cache, if '-cache' was given
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CACHE)).map(File::new);
+    }
+
+    /**
+     * @param config
+     * @return the maximum size of the compilation cache, in bytes
+     */
+    public static long getCacheSize(Map<String, String> config) {
+        var sizeMb = config.get(CACHE_SIZE);
+        return (sizeMb == null ? DEFAULT_CACHE_SIZE_MB : Long.parseLong(sizeMb)) * 1024 * 1024;
+    }
+
+    /**
+     * @param config
+     * @return where the compilation stats should be written, if '-stats' was given. 'true' means the standard output,
+     * otherwise it is the path of a file
+     */
+    public static Optional<String> getStats(Map<String, String> config) {
+        return Optional.ofNullable(config.get(STATS));
+    }
+
+    /**
+     * @param config
+     * @return the directory or jar file where the class files should be written, if '-d' was given
+     */
+    public static Optional<File> getClassOutput(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CLASS_OUTPUT)).map(File::new);
+    }
+
+    /**
+     * @param config
+     * @return the backend given with '-backend', either 'jasmin' (the default) or 'bytecode'
+     */
+    public static String getBackend(Map<String, String> config) {
+        var backend = config.getOrDefault(BACKEND, JASMIN_BACKEND);
+
+        if (!backend.equals(JASMIN_BACKEND) && !backend.equals(BYTECODE_BACKEND)) {
+            throw new RuntimeException("Option '-backend' expects '" + JASMIN_BACKEND + "' or '" + BYTECODE_BACKEND + "', got '" + backend + "'");
+        }
+
+        return backend;
+    }
+
+    /**
+     * @param config
+     * @return true if the parser should keep the AST in a {@link pt.up.fe.comp2024.ast.CompactAst}, with '-compact-ast'
+     */
+    public static boolean getCompactAst(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(COMPACT_AST, "false"));
+    }
+
+    /**
+     * @param config
+     * @return the last stage that should run, given with '-stop-after'. Without it, it is the stage that produces what
+     * '-emit' asks for, or the last stage
+     */
+    public static String getStopAfter(Map<String, String> config) {
+        var stopAfter = config.get(STOP_AFTER);
+
+        if (stopAfter == null) {
+            return getEmit(config).map(EMIT_STAGES::get).orElse(JASMIN_STAGE);
+        }
+
+        if (!STAGES.contains(stopAfter)) {
+            throw new RuntimeException("Option '-stop-after' expects one of " + STAGES + ", got '" + stopAfter + "'");
+        }
+
+        return stopAfter;
+    }
+
+    /**
+     * @param config
+     * @return true if the given stage runs, according to '-stop-after'
+     */
+    public static boolean runsStage(Map<String, String> config, String stage) {
+        return STAGES.indexOf(stage) <= STAGES.indexOf(getStopAfter(config));
+    }
+
+    /**
+     * @param config
+     * @return what should be printed at the end of the compilation, given with '-emit', if any
+     */
+    public static Optional<String> getEmit(Map<String, String> config) {
+        var emit = config.get(EMIT);
+
+        if (emit != null && !EMIT_STAGES.containsKey(emit)) {
+            throw new RuntimeException("Option '-emit' expects one of " + EMIT_STAGES.keySet() + ", got '" + emit + "'");
+        }
+
+        return Optional.ofNullable(emit);
+    }
+
     public static Map<String, String> getDefault() {
 
         var config = new HashMap<String, String>();
@@ -72,40 +299,89 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
-            String shortOption = arg.substring(1, 2);
-            if (!isShortOpt(shortOption)) {
-                throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
+            // Options are either a flag ('-o') or an option with a value ('-r=3', '-batch=src')
+            var equalIndex = arg.indexOf('=');
+            String option = equalIndex == -1 ? arg.substring(1) : arg.substring(1, equalIndex);
+            if (!isShortOpt(option)) {
+                throw new RuntimeException("Unrecognized option '-" + option + "'");
             }
 
             String value = "true";
-            if (arg.length() > 2) {
-                String equalSign = arg.substring(2, 3);
-                if (equalSign.equals("=")) {
-
-                    value = arg.substring(3);
-                }
+            if (equalIndex != -1) {
+                value = arg.substring(equalIndex + 1);
             }
 
-            config.put(getLongOpt(shortOption), value);
+            config.put(getLongOpt(option), value);
         }
 
-        if (!config.containsKey(INPUT_FILE)) {
+        if (getThreads(config) < 1) {
+            throw new RuntimeException("Option '-j' expects a positive number of threads, got '" + config.get(THREADS) + "'");
+        }
+
+        if (config.containsKey(CACHE)) {
+            config.put(CACHE, new File(config.get(CACHE)).getAbsolutePath());
+        }
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+        // Class files are written to the working directory, unless '-d' says otherwise
+        if (EMIT_CLASS.equals(config.get(EMIT)) && !config.containsKey(CLASS_OUTPUT)) {
+            config.put(CLASS_OUTPUT, ".");
         }
 
-        // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
+        if (config.containsKey(CLASS_OUTPUT)) {
+            config.put(CLASS_OUTPUT, new File(config.get(CLASS_OUTPUT)).getAbsolutePath());
         }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+        if (config.containsKey(BATCH)) {
+
+            // make sure we save the absolute path, the compilation can happen in a server with another working dir
+            config.put(BATCH, new File(config.get(BATCH)).getAbsolutePath());
+
+        } else if (config.containsKey(WATCH)) {
+
+            var watchDir = new File(config.get(WATCH));
+            if (!watchDir.isDirectory()) {
+                throw new RuntimeException("Option '-watch' expects a directory, got '" + watchDir + "'");
+            }
+
+            // Only the changed classes are written each time, so they cannot go to a jar
+            if (config.getOrDefault(CLASS_OUTPUT, "").endsWith(".jar")) {
+                throw new RuntimeException("Option '-watch' writes class files to a directory, but '-d' is a jar");
+            }
+
+            config.put(WATCH, watchDir.getAbsolutePath());
+
+        } else if (!config.containsKey(SERVER)) {
+            // A server receives the files to compile from its clients, every other mode needs an input file
+
+            if (!config.containsKey(INPUT_FILE)) {
+
+                throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-batch=<DIR|GLOB|MANIFEST>'");
+            }
+
+            // make sure we save the absolute path of the input file
+            var inputFile = new File(config.get(INPUT_FILE));
+            if (!inputFile.isFile()) {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
+
+            var absolutePath = inputFile.getAbsolutePath();
+            config.put(INPUT_FILE, absolutePath);
+        }
 
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getServerPort(config);
+        getConnectPort(config);
+        getCacheSize(config);
+        getBackend(config);
+        getStopAfter(config);
+        getEmit(config).ifPresent(emit -> {
+            if (!runsStage(config, EMIT_STAGES.get(emit))) {
+                throw new RuntimeException("Option '-emit=" + emit + "' needs the stage '" + EMIT_STAGES.get(emit)
+                        + "', but the compilation stops after '" + getStopAfter(config) + "'");
+            }
+        });
 
         return config;
     }
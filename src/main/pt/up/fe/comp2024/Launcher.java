@@ -2,17 +2,32 @@ package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.BytecodeBackendImpl;
+import pt.up.fe.comp2024.backend.ClassFileWriter;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.batch.BatchCompiler;
+import pt.up.fe.comp2024.cache.CompilationCache;
+import pt.up.fe.comp2024.daemon.CompileClient;
+import pt.up.fe.comp2024.daemon.CompileServer;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.parser.MappedCharStream;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.comp2024.watch.WatchCompiler;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Launcher {
 
@@ -21,41 +36,277 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        // Server mode, keeps a warm compiler waiting for requests from clients
+        var serverPort = CompilerConfig.getServerPort(config);
+        if (serverPort.isPresent()) {
+            try (var server = new CompileServer(serverPort.get(), CompilerConfig.getThreads(config))) {
+                System.out.println("Compile server listening on port " + server.getPort());
+                server.run();
+            }
+
+            return;
+        }
+
+        // Client mode, the compilation is done by a running server
+        var connectPort = CompilerConfig.getConnectPort(config);
+        if (connectPort.isPresent()) {
+            System.exit(CompileClient.compile(connectPort.get(), config));
+        }
+
+        // Watch mode, compiles the files of a directory whenever they change, until the process is stopped
+        if (CompilerConfig.getWatchDir(config).isPresent()) {
+            try (var watch = new WatchCompiler(config, result -> System.out.println(result.getSummary()))) {
+                watch.run();
+            }
+
+            return;
+        }
+
+        // Batch mode, compiles several files and prints a summary instead of stopping at the first error
+        if (CompilerConfig.getBatchInput(config).isPresent()) {
+            var batchResult = new BatchCompiler(config).run();
+            System.out.println(batchResult.getSummary());
+
+            CompilerConfig.getStats(config)
+                    .ifPresent(destination -> writeStats(destination, CompilationStats.toJson(batchResult.getStats())));
+
+            if (!batchResult.isSuccess()) {
+                System.exit(1);
+            }
+
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
+        var statsDestination = CompilerConfig.getStats(config);
+        var stats = statsDestination.isPresent() ? new CompilationStats(inputFile.getPath()) : CompilationStats.disabled();
+
+        var jasminResult = compile(inputFile.toPath(), config, stats);
+
+        // Class files are assembled in memory, without going through a .j file
+        var classOutput = CompilerConfig.getClassOutput(config);
+        if (classOutput.isPresent() && jasminResult != null) {
+            try (var classWriter = new ClassFileWriter(classOutput.get())) {
+                writeClass(classWriter, jasminResult, stats);
+            }
+        }
+
+        statsDestination.ifPresent(destination -> writeStats(destination, stats.toJson()));
+    }
+
+    /**
+     * Assembles the given result and writes its class file, recording the time in the 'class' stage of the stats.
+     *
+     * @param classWriter
+     * @param jasminResult
+     * @param stats
+     */
+    public static void writeClass(ClassFileWriter classWriter, JasminResult jasminResult, CompilationStats stats) {
+        stats.measureStage("class", () -> classWriter.write(jasminResult));
+    }
+
+    private static void writeStats(String destination, String json) {
+        // Option given without a value
+        if (destination.equals("true")) {
+            System.out.println(json);
+        } else {
+            SpecsIo.write(new File(destination), json);
+        }
+    }
+
+    /**
+     * Runs the stages of the compiler over the given code, up to the one given with '-stop-after'.
+     *
+     * @param code
+     * @param config
+     * @return the result of the last stage, or null if '-stop-after' stops before the Jasmin stage
+     * @throws RuntimeException if any of the stages reports an error
+     */
+    public static JasminResult compile(String code, Map<String, String> config) {
+        return compile(code, config, CompilationStats.disabled());
+    }
+
+    /**
+     * Same as {@link #compile(String, Map)}, recording metrics of each stage in the given stats.
+     *
+     * @param code
+     * @param config
+     * @param stats
+     * @return the result of the last stage, or null if '-stop-after' stops before the Jasmin stage
+     * @throws RuntimeException if any of the stages reports an error
+     */
+    public static JasminResult compile(String code, Map<String, String> config, CompilationStats stats) {
+        return stats.collect(() -> runStages(cache -> cache.getKey(code, config), parser -> parser.parse(code, config),
+                config, stats, System.out::println));
+    }
+
+    /**
+     * Same as {@link #compile(String, Map, CompilationStats)}, but the parser reads the file directly, without
+     * copying its code into a String.
+     *
+     * @param file
+     * @param config
+     * @param stats
+     * @return the result of the last stage, or null if '-stop-after' stops before the Jasmin stage
+     * @throws RuntimeException if any of the stages reports an error
+     */
+    public static JasminResult compile(Path file, Map<String, String> config, CompilationStats stats) {
+        return compile(file, config, stats, System.out::println);
+    }
+
+    /**
+     * Same as {@link #compile(Path, Map, CompilationStats)}, but what '-emit' asks for is given to the consumer instead
+     * of being printed.
+     *
+     * @param file
+     * @param config
+     * @param stats
+     * @param emitted receives the output asked for with '-emit', if any
+     * @return the result of the last stage, or null if '-stop-after' stops before the Jasmin stage
+     * @throws RuntimeException if any of the stages reports an error
+     */
+    public static JasminResult compile(Path file, Map<String, String> config, CompilationStats stats,
+                                       Consumer<String> emitted) {
+        return compile(file, null, config, stats, emitted);
+    }
+
+    /**
+     * Same as {@link #compile(Path, Map, CompilationStats, Consumer)}, for a file that was already parsed, e.g. to find
+     * the class it declares. The given result is used instead of parsing the file again.
+     *
+     * @param file
+     * @param parsed result of parsing the file with the same config, or null to parse it
+     * @param config
+     * @param stats
+     * @param emitted receives the output asked for with '-emit', if any
+     * @return the result of the last stage, or null if '-stop-after' stops before the Jasmin stage
+     * @throws RuntimeException if any of the stages reports an error
+     */
+    public static JasminResult compile(Path file, JmmParserResult parsed, Map<String, String> config,
+                                       CompilationStats stats, Consumer<String> emitted) {
+        return stats.collect(() -> {
+            if (parsed != null) {
+                return runStages(cache -> cache.getKey(MappedCharStream.map(file), config), parser -> {
+                    stats.count("reusedAsts", 1);
+                    return parsed;
+                }, config, stats, emitted);
+            }
+
+            // Mapped once, for both the key of the cache and the lexer
+            var bytes = MappedCharStream.map(file);
+
+            return runStages(cache -> cache.getKey(bytes, config), parser -> parser.parse(file, bytes, config),
+                    config, stats, emitted);
+        });
+    }
+
+    private static JasminResult runStages(Function<CompilationCache, String> getCacheKey,
+                                          Function<JmmParserImpl, JmmParserResult> parse,
+                                          Map<String, String> config, CompilationStats stats,
+                                          Consumer<String> emitted) {
+
+        // Unchanged sources skip every stage. Only complete compilations are cached. The bytecode backend only caches
+        // the class file, so printing its Jasmin code needs the full compilation
+        var emit = CompilerConfig.getEmit(config).orElse(CompilerConfig.EMIT_CLASS);
+        var bytecodeBackend = CompilerConfig.getBackend(config).equals(CompilerConfig.BYTECODE_BACKEND);
+        var usesCache = CompilerConfig.runsStage(config, CompilerConfig.JASMIN_STAGE)
+                && (emit.equals(CompilerConfig.EMIT_CLASS) || (emit.equals(CompilerConfig.EMIT_JASMIN) && !bytecodeBackend));
+        var cache = usesCache ? CompilationCache.fromConfig(config).orElse(null) : null;
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = getCacheKey.apply(cache);
+
+            var cachedResult = cache.getJasmin(cacheKey, config);
+            if (cachedResult.isPresent()) {
+                stats.count("cacheHits", 1);
+                emit(config, CompilerConfig.EMIT_JASMIN, () -> cachedResult.get().getJasminCode(), emitted);
+                return cachedResult.get();
+            }
+        }
 
         // Parsing stage
         JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = stats.measureStage("parse", () -> parse.apply(parser));
         TestUtils.noErrors(parserResult.getReports());
+        stats.countAst(parserResult.getRootNode());
 
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
+        emit(config, CompilerConfig.EMIT_AST, () -> parserResult.getRootNode().toTree(), emitted);
+        if (!CompilerConfig.runsStage(config, CompilerConfig.SEMANTIC_STAGE)) {
+            return null;
+        }
 
         // Semantic Analysis stage
         JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
+        JmmSemanticsResult semanticsResult = stats.measureStage("semantic", () -> sema.semanticAnalysis(parserResult));
         TestUtils.noErrors(semanticsResult.getReports());
+        stats.countSymbols(semanticsResult.getSymbolTable());
+
+        emit(config, CompilerConfig.EMIT_SYMBOLS, () -> semanticsResult.getSymbolTable().print(), emitted);
+        if (!CompilerConfig.runsStage(config, CompilerConfig.OLLIR_STAGE)) {
+            return null;
+        }
+
+        // The later stages are in their own methods, so their classes are only loaded if they run
+        OllirResult ollirResult = runOptimization(semanticsResult, stats);
 
+        emit(config, CompilerConfig.EMIT_OLLIR, ollirResult::getOllirCode, emitted);
+        if (!CompilerConfig.runsStage(config, CompilerConfig.JASMIN_STAGE)) {
+            return null;
+        }
+
+        JasminResult jasminResult = runBackend(ollirResult, config, stats);
+
+        emit(config, CompilerConfig.EMIT_JASMIN, jasminResult::getJasminCode, emitted);
+
+        if (cache != null) {
+            cache.put(cacheKey, jasminResult);
+        }
+
+        return jasminResult;
+    }
 
+    private static OllirResult runOptimization(JmmSemanticsResult semanticsResult, CompilationStats stats) {
         // Optimization stage
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
+        OllirResult ollirCode = stats.measureStage("ollir", () -> ollirGen.toOllir(ollirGen.optimize(semanticsResult)));
+        TestUtils.noErrors(ollirCode.getReports());
+
+        OllirResult ollirResult = stats.measureStage("optimize", () -> ollirGen.optimize(ollirCode));
         TestUtils.noErrors(ollirResult.getReports());
+        stats.countOllir(ollirResult);
 
         // Print OLLIR code
         //System.out.println(ollirResult.getOllirCode());
 
+        return ollirResult;
+    }
+
+    private static JasminResult runBackend(OllirResult ollirResult, Map<String, String> config, CompilationStats stats) {
         // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
+        JasminBackend jasminGen = CompilerConfig.getBackend(config).equals(CompilerConfig.BYTECODE_BACKEND) ?
+                new BytecodeBackendImpl() :
+                new JasminBackendImpl();
+        JasminResult jasminResult = stats.measureStage("jasmin", () -> jasminGen.toJasmin(ollirResult));
         TestUtils.noErrors(jasminResult.getReports());
+        stats.countJasmin(jasminResult);
 
         // Print Jasmin code
         //System.out.println(jasminResult.getJasminCode());
+
+        return jasminResult;
+    }
+
+    /**
+     * Gives the given output to the consumer if it is what '-emit' asks for.
+     */
+    private static void emit(Map<String, String> config, String output, Supplier<String> contents,
+                             Consumer<String> emitted) {
+        if (CompilerConfig.getEmit(config).filter(output::equals).isPresent()) {
+            emitted.accept(contents.get());
+        }
     }
 
 }
@@ -20,4 +20,11 @@ public interface AnalysisPass {
      */
     List<Report> analyze(JmmNode root, SymbolTable table);
 
+    /**
+     * @return the passes that must see each node before this one, when passes share a traversal
+     */
+    default List<Class<? extends AnalysisPass>> getDependencies() {
+        return List.of();
+    }
+
 }
\ No newline at end of file
@@ -6,20 +6,45 @@ import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 /**
- *
+ * Analysis pass that visits the nodes of the kinds it registers with addVisit.
+ * <p>
+ * Can run on its own, or share a single traversal with other passes in a {@link FusedAnalysis}.
  */
 public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
 
     private List<Report> reports;
 
+    // Filled by buildVisitor, which runs in the constructor of the superclass, before any field initializer
+    private Map<String, BiFunction<JmmNode, SymbolTable, Void>> visits;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
     }
 
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, SymbolTable, Void> method) {
+        super.addVisit(kind, method);
+
+        if (visits == null) {
+            visits = new LinkedHashMap<>();
+        }
+        visits.put(kind, method);
+    }
+
+    /**
+     * @return the visit method of each kind of node this pass is interested in
+     */
+    Map<String, BiFunction<JmmNode, SymbolTable, Void>> getVisits() {
+        return visits == null ? Map.of() : visits;
+    }
+
     protected void addReport(Report report) {
         reports.add(report);
     }
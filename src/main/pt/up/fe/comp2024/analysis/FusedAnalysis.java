@@ -0,0 +1,190 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.stats.CompilationStats;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Runs several analysis passes in a single preorder traversal of the AST.
+ * <p>
+ * Each node is given, in turn, to every pass that registered a visit for its kind, or for the closest kind in its
+ * hierarchy, as {@link pt.up.fe.comp.jmm.ast.AJmmVisitor} does. A pass sees each node after the
+ * passes it depends on, so the passes are ordered so that dependencies come first. A pass that throws stops being
+ * visited, and an error is reported for it, as when passes run on their own.
+ */
+public class FusedAnalysis implements AnalysisPass {
+
+    private final List<AnalysisVisitor> passes;
+    // Visits of each node kind, resolved from its hierarchy when the kind is first seen
+    private final Map<String, List<Visit>> visitsByKind;
+    private final long[] passNanos;
+
+    public FusedAnalysis(List<? extends AnalysisVisitor> passes) {
+        this.passes = sort(passes);
+        this.visitsByKind = new HashMap<>();
+        this.passNanos = new long[this.passes.size()];
+    }
+
+    /**
+     * @return the passes, in the order they see each node
+     */
+    public List<AnalysisVisitor> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        var stats = CompilationStats.current();
+        var reports = analyze(root, table, node -> true, stats.isEnabled());
+
+        if (stats.isEnabled()) {
+            getPassNanos().forEach(stats::addPassTime);
+        }
+
+        return reports;
+    }
+
+    /**
+     * Analyzes the subtree of the given node, without reporting the pass times to the current stats.
+     *
+     * @param descend whether the walk enters the subtree of a node
+     * @param timed   whether the time spent in each pass is measured
+     */
+    List<Report> analyze(JmmNode root, SymbolTable table, Predicate<JmmNode> descend, boolean timed) {
+        var failures = new Exception[passes.size()];
+        Arrays.fill(passNanos, 0);
+
+        var nodes = new ArrayDeque<JmmNode>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            var node = nodes.pop();
+
+            var visits = visitsByKind.computeIfAbsent(node.getKind(), kind -> getVisits(node));
+            for (var visit : visits) {
+                if (failures[visit.pass] != null) {
+                    continue;
+                }
+
+                long start = timed ? System.nanoTime() : 0;
+                try {
+                    visit.method.apply(node, table);
+                } catch (Exception e) {
+                    failures[visit.pass] = e;
+                }
+
+                if (timed) {
+                    passNanos[visit.pass] += System.nanoTime() - start;
+                }
+            }
+
+            // Children are pushed in reverse, so that they are visited from left to right
+            var children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (descend.test(children.get(i))) {
+                    nodes.push(children.get(i));
+                }
+            }
+        }
+
+        var reports = new ArrayList<Report>();
+        for (int i = 0; i < passes.size(); i++) {
+            var pass = passes.get(i);
+            reports.addAll(pass.getReports());
+
+            if (failures[i] != null) {
+                reports.add(Report.newError(Stage.SEMANTIC,
+                        -1,
+                        -1,
+                        "Problem while executing analysis pass '" + pass.getClass() + "'",
+                        failures[i])
+                );
+            }
+        }
+
+        return reports;
+    }
+
+    // For each pass, the visit of the first kind in the hierarchy of the node that has one
+    private List<Visit> getVisits(JmmNode node) {
+        var visits = new ArrayList<Visit>();
+
+        for (int i = 0; i < passes.size(); i++) {
+            var passVisits = passes.get(i).getVisits();
+
+            for (var kind : node.getHierarchy()) {
+                var method = passVisits.get(kind);
+                if (method != null) {
+                    visits.add(new Visit(i, method));
+                    break;
+                }
+            }
+        }
+
+        return visits;
+    }
+
+    /**
+     * @return the time spent in each pass during the last analysis, in nanoseconds, if stats were enabled
+     */
+    public Map<String, Long> getPassNanos() {
+        var nanos = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < passes.size(); i++) {
+            nanos.put(passes.get(i).getClass().getSimpleName(), passNanos[i]);
+        }
+
+        return nanos;
+    }
+
+    // Keeps the given order, except for passes that must come after their dependencies
+    private static List<AnalysisVisitor> sort(List<? extends AnalysisVisitor> passes) {
+        var sorted = new ArrayList<AnalysisVisitor>();
+        var visiting = new HashSet<AnalysisVisitor>();
+
+        for (var pass : passes) {
+            addSorted(pass, passes, sorted, visiting);
+        }
+
+        return sorted;
+    }
+
+    private static void addSorted(AnalysisVisitor pass, List<? extends AnalysisVisitor> passes,
+                                  List<AnalysisVisitor> sorted, Set<AnalysisVisitor> visiting) {
+        if (sorted.contains(pass)) {
+            return;
+        }
+
+        if (!visiting.add(pass)) {
+            throw new RuntimeException("Analysis pass '" + pass.getClass().getSimpleName() + "' has a circular dependency");
+        }
+
+        for (var dependency : pass.getDependencies()) {
+            var dependencyPass = passes.stream()
+                    .filter(candidate -> candidate != pass && dependency.isInstance(candidate))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("Analysis pass '" + pass.getClass().getSimpleName()
+                            + "' depends on '" + dependency.getSimpleName() + "', which is not enabled"));
+
+            addSorted(dependencyPass, passes, sorted, visiting);
+        }
+
+        visiting.remove(pass);
+        sorted.add(pass);
+    }
+
+    private static class Visit {
+        private final int pass;
+        private final BiFunction<JmmNode, SymbolTable, Void> method;
+
+        private Visit(int pass, BiFunction<JmmNode, SymbolTable, Void> method) {
+            this.pass = pass;
+            this.method = method;
+        }
+    }
+}
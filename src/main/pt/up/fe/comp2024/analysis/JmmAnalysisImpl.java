@@ -6,7 +6,7 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.AllPasses;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
@@ -16,15 +16,6 @@ import java.util.List;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
-
-    private final List<AnalysisPass> analysisPasses;
-
-    public JmmAnalysisImpl() {
-
-        this.analysisPasses = List.of(new UndeclaredVariable(), new AllPasses());
-
-    }
-
     @Override
     public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {
 
@@ -32,24 +23,16 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
 
-        List<Report> reports = new ArrayList<>();
-
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-            }
-
-        }
+        // All passes share a single traversal of each method, and methods are analyzed concurrently
+        AnalysisPass analysis = CompilerConfig.getMethodPool(parserResult.getConfig())
+                .<AnalysisPass>map(pool -> new ParallelAnalysis(JmmAnalysisImpl::createPasses, pool))
+                .orElseGet(() -> new FusedAnalysis(createPasses()));
+        List<Report> reports = new ArrayList<>(analysis.analyze(rootNode, table));
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
+
+    private static List<AnalysisVisitor> createPasses() {
+        return List.of(new UndeclaredVariable(), new AllPasses());
+    }
 }
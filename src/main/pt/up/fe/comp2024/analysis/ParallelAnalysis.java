@@ -0,0 +1,91 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.stats.CompilationStats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs the analysis passes over each method of the class in a separate task of a fork-join pool.
+ * <p>
+ * Each task gets its own instances of the passes, so the state a pass keeps while visiting a method, like the name of
+ * the current method, and its list of reports are confined to that task. The nodes outside the methods are analyzed
+ * first, in the calling thread. Reports are merged in source order, the class-level ones first and then the ones of
+ * each method, so the result does not depend on how the tasks are scheduled.
+ */
+public class ParallelAnalysis implements AnalysisPass {
+
+    private final Supplier<List<? extends AnalysisVisitor>> passes;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param passes creates a new instance of each pass, called once for the class and once per method
+     * @param pool   the pool where the methods are analyzed
+     */
+    public ParallelAnalysis(Supplier<List<? extends AnalysisVisitor>> passes, ForkJoinPool pool) {
+        this.passes = passes;
+        this.pool = pool;
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        var stats = CompilationStats.current();
+        var timed = stats.isEnabled();
+
+        var classAnalysis = new FusedAnalysis(passes.get());
+        var reports = new ArrayList<>(classAnalysis.analyze(root, table, node -> !Kind.METHOD_DECL.check(node), timed));
+
+        var tasks = new ArrayList<ForkJoinTask<MethodResult>>();
+        for (var method : root.getDescendants(Kind.METHOD_DECL.getNodeName())) {
+            tasks.add(ForkJoinTask.adapt(() -> analyzeMethod(method, table, timed)));
+        }
+
+        if (tasks.size() < 2) {
+            tasks.forEach(ForkJoinTask::invoke);
+        } else if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+
+        // Stats are only updated in the calling thread, which is the one they belong to
+        var passNanos = new LinkedHashMap<>(classAnalysis.getPassNanos());
+        for (var task : tasks) {
+            var result = task.join();
+            reports.addAll(result.reports);
+            result.passNanos.forEach((pass, nanos) -> passNanos.merge(pass, nanos, Long::sum));
+        }
+
+        if (timed) {
+            passNanos.forEach(stats::addPassTime);
+        }
+
+        return reports;
+    }
+
+    private MethodResult analyzeMethod(JmmNode method, SymbolTable table, boolean timed) {
+        var analysis = new FusedAnalysis(passes.get());
+        var reports = analysis.analyze(method, table, node -> true, timed);
+
+        return new MethodResult(reports, analysis.getPassNanos());
+    }
+
+    private static class MethodResult {
+        private final List<Report> reports;
+        private final Map<String, Long> passNanos;
+
+        private MethodResult(List<Report> reports, Map<String, Long> passNanos) {
+            this.reports = reports;
+            this.passNanos = passNanos;
+        }
+    }
+}
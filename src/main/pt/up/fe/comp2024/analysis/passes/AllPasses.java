@@ -7,6 +7,7 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.AnalysisPass;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
@@ -18,7 +19,6 @@ import static pt.up.fe.comp2024.ast.TypeUtils.areTypesAssignable;
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
 
 public class AllPasses extends AnalysisVisitor {
-    private String currentMethod;
 
     @Override
     public void buildVisitor() {
@@ -35,6 +35,12 @@ public class AllPasses extends AnalysisVisitor {
         addVisit(Kind.VAR_DECL, this::visitVarDecl);
     }
 
+    @Override
+    public List<Class<? extends AnalysisPass>> getDependencies() {
+        // Undeclared variables have an undefined type, which is not reported again
+        return List.of(UndeclaredVariable.class);
+    }
+
     private Void visitNewClassExpr(JmmNode ClassExpr, SymbolTable table) {
         List<String> methods = table.getMethods();
         List<String> imports = table.getImports();
@@ -98,9 +104,11 @@ public class AllPasses extends AnalysisVisitor {
     }
 
     private Void visitBinary(JmmNode BinaryExpr, SymbolTable table) {
-        if (getExprType(BinaryExpr.getChildren().get(0), table).getName().equals("Undefined") || getExprType(BinaryExpr.getChildren().get(1), table).getName().equals("Undefined"))
+        Type leftType = getExprType(BinaryExpr.getChildren().get(0), table);
+        Type rightType = getExprType(BinaryExpr.getChildren().get(1), table);
+        if (leftType.getName().equals("Undefined") || rightType.getName().equals("Undefined"))
             return null;
-        if (!getExprType(BinaryExpr.getChildren().get(0), table).getName().equals(getExprType(BinaryExpr.getChildren().get(1), table).getName()) || getExprType(BinaryExpr.getChildren().get(0), table).isArray() != getExprType(BinaryExpr.getChildren().get(1), table).isArray()) {
+        if (!leftType.getName().equals(rightType.getName()) || leftType.isArray() != rightType.isArray()) {
             addReport(Report.newError(
                     Stage.SEMANTIC,
                     NodeUtils.getLine(BinaryExpr),
@@ -109,7 +117,7 @@ public class AllPasses extends AnalysisVisitor {
                     null)
             );
         }
-        if ((BinaryExpr.get("op").equals("&&")) && (!getExprType(BinaryExpr.getChildren().get(0), table).getName().equals("boolean") || !getExprType(BinaryExpr.getChildren().get(1), table).getName().equals("boolean"))) {
+        if ((BinaryExpr.get("op").equals("&&")) && (!leftType.getName().equals("boolean") || !rightType.getName().equals("boolean"))) {
             addReport(Report.newError(
                     Stage.SEMANTIC,
                     NodeUtils.getLine(BinaryExpr),
@@ -117,7 +125,7 @@ public class AllPasses extends AnalysisVisitor {
                     "Operands must be boolean while using operator" + BinaryExpr.get("op"),
                     null)
             );
-        } else if ((getExprType(BinaryExpr.getChildren().get(0), table).isArray() || getExprType(BinaryExpr.getChildren().get(1), table).isArray())) {
+        } else if ((leftType.isArray() || rightType.isArray())) {
             addReport(Report.newError(
                     Stage.SEMANTIC,
                     NodeUtils.getLine(BinaryExpr),
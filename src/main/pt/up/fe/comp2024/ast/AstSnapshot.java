@@ -0,0 +1,407 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Binary copy of an AST, so that a file whose code did not change can be loaded without parsing it again.
+ * <p>
+ * A snapshot has a header, a table with the distinct strings of the tree, and the nodes in pre-order. Each node has
+ * its kind and hierarchy, its attributes and its number of children. Numbers are written as varints, and strings as
+ * their index in the table. Attributes whose value is a number, e.g. the location of the node, are written as numbers.
+ */
+public class AstSnapshot {
+
+    private static final byte[] MAGIC = {'J', 'M', 'M', 'A'};
+    private static final int VERSION = 1;
+
+    // Types of attribute values
+    private static final int STRING = 0;
+    private static final int NUMBER = 1;
+    private static final int LIST = 2;
+    private static final int FALSE = 3;
+    private static final int TRUE = 4;
+
+    private static final Tree<JmmNode> JMM_NODES = new Tree<>() {
+        @Override
+        public String getKind(JmmNode node) {
+            return node.getKind();
+        }
+
+        @Override
+        public Collection<String> getHierarchy(JmmNode node) {
+            return node.getHierarchy();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes(JmmNode node) {
+            var attributes = new LinkedHashMap<String, Object>();
+            for (var attribute : node.getAttributes()) {
+                attributes.put(attribute, node.getObject(attribute));
+            }
+
+            return attributes;
+        }
+
+        @Override
+        public List<JmmNode> getChildren(JmmNode node) {
+            return node.getChildren();
+        }
+    };
+
+    private AstSnapshot() {
+    }
+
+    /**
+     * What a snapshot reads from each node of a tree, so that a tree that is not made of JmmNodes, e.g. a parse tree,
+     * can be written as the AST it would become.
+     *
+     * @param <N> the type of the nodes
+     */
+    public interface Tree<N> {
+
+        String getKind(N node);
+
+        Collection<String> getHierarchy(N node);
+
+        /**
+         * @return the attributes of the node and their values, in the order they are written
+         */
+        Map<String, Object> getAttributes(N node);
+
+        List<N> getChildren(N node);
+    }
+
+    /**
+     * @return the snapshot of the given tree, or empty if it has attributes that cannot be written, i.e. values that
+     * are not strings, booleans or lists of strings
+     */
+    public static Optional<byte[]> write(JmmNode root) {
+        return write(root, JMM_NODES);
+    }
+
+    /**
+     * Same as {@link #write(JmmNode)}, for a tree whose nodes are read through the given {@link Tree}.
+     */
+    public static <N> Optional<byte[]> write(N root, Tree<N> tree) {
+        var writer = new Writer<>(tree);
+        if (!writer.writeTree(root)) {
+            return Optional.empty();
+        }
+
+        var snapshot = new Output();
+        snapshot.writeBytes(MAGIC);
+        snapshot.writeVarint(VERSION);
+        snapshot.writeVarint(writer.strings.size());
+        for (var string : writer.strings) {
+            var bytes = string.getBytes(StandardCharsets.UTF_8);
+            snapshot.writeVarint(bytes.length);
+            snapshot.writeBytes(bytes);
+        }
+        snapshot.writeBytes(writer.nodes.toByteArray());
+
+        return Optional.of(snapshot.toByteArray());
+    }
+
+    /**
+     * @return the tree of the given snapshot
+     */
+    public static JmmNode read(byte[] snapshot) {
+        var input = new Input(snapshot);
+
+        if (!Arrays.equals(MAGIC, input.readBytes(MAGIC.length)) || input.readVarint() != VERSION) {
+            throw new RuntimeException("Not an AST snapshot of this version");
+        }
+
+        var strings = new String[input.readVarint()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = new String(input.readBytes(input.readVarint()), StandardCharsets.UTF_8);
+        }
+
+        var root = new Reader(input, strings).readTree();
+        if (!input.isAtEnd()) {
+            throw new RuntimeException("AST snapshot has trailing bytes");
+        }
+
+        return root;
+    }
+
+    private static class Writer<N> {
+
+        private final Tree<N> tree;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final Output nodes = new Output();
+
+        private Writer(Tree<N> tree) {
+            this.tree = tree;
+        }
+
+        /**
+         * Writes the nodes in pre-order. Uses an explicit stack, so deep trees do not overflow the call stack.
+         */
+        private boolean writeTree(N root) {
+            var pending = new ArrayDeque<N>();
+            pending.push(root);
+
+            while (!pending.isEmpty()) {
+                var node = pending.pop();
+                if (!writeNode(node)) {
+                    return false;
+                }
+
+                // Pushed in reverse, so the first child is written next
+                var children = tree.getChildren(node);
+                nodes.writeVarint(children.size());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Writes the node without its children.
+         */
+        private boolean writeNode(N node) {
+            nodes.writeVarint(stringId(tree.getKind(node)));
+
+            var hierarchy = tree.getHierarchy(node);
+            nodes.writeVarint(hierarchy.size());
+            hierarchy.forEach(kind -> nodes.writeVarint(stringId(kind)));
+
+            var attributes = tree.getAttributes(node);
+            nodes.writeVarint(attributes.size());
+            for (var attribute : attributes.entrySet()) {
+                nodes.writeVarint(stringId(attribute.getKey()));
+                if (!writeValue(attribute.getValue())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean writeValue(Object value) {
+            if (value instanceof String string) {
+                if (isNumber(string)) {
+                    nodes.writeVarint(NUMBER);
+                    nodes.writeVarint(Integer.parseInt(string));
+                } else {
+                    nodes.writeVarint(STRING);
+                    nodes.writeVarint(stringId(string));
+                }
+
+                return true;
+            }
+
+            if (value instanceof Boolean bool) {
+                nodes.writeVarint(bool ? TRUE : FALSE);
+
+                return true;
+            }
+
+            if (value instanceof List<?> list && list.stream().allMatch(String.class::isInstance)) {
+                nodes.writeVarint(LIST);
+                nodes.writeVarint(list.size());
+                list.forEach(element -> nodes.writeVarint(stringId((String) element)));
+
+                return true;
+            }
+
+            return false;
+        }
+
+        private int stringId(String string) {
+            return stringIds.computeIfAbsent(string, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+
+        /**
+         * Only non-negative numbers that are read back as the same string, e.g. not "007".
+         */
+        private static boolean isNumber(String string) {
+            if (string.isEmpty() || string.length() > 9) {
+                return false;
+            }
+
+            if (string.length() > 1 && string.charAt(0) == '0') {
+                return false;
+            }
+
+            return string.chars().allMatch(c -> c >= '0' && c <= '9');
+        }
+    }
+
+    private static class Reader {
+
+        private final Input input;
+        private final String[] strings;
+
+        // Nodes of the same kind share the same hierarchy
+        private final Map<String, List<String>> hierarchies;
+
+        private Reader(Input input, String[] strings) {
+            this.input = input;
+            this.strings = strings;
+            this.hierarchies = new HashMap<>();
+        }
+
+        /**
+         * Reads the nodes in pre-order, keeping the nodes whose children are still being read in an explicit stack.
+         */
+        private JmmNode readTree() {
+            var parents = new ArrayDeque<JmmNodeImpl>();
+            var remainingChildren = new ArrayDeque<Integer>();
+            JmmNodeImpl root = null;
+
+            do {
+                var node = readNode();
+                var numChildren = input.readVarint();
+
+                if (parents.isEmpty()) {
+                    root = node;
+                } else {
+                    parents.peek().add(node);
+                    remainingChildren.push(remainingChildren.pop() - 1);
+                }
+
+                if (numChildren > 0) {
+                    parents.push(node);
+                    remainingChildren.push(numChildren);
+                }
+
+                // Nodes whose children were all read
+                while (!remainingChildren.isEmpty() && remainingChildren.peek() == 0) {
+                    parents.pop();
+                    remainingChildren.pop();
+                }
+            } while (!parents.isEmpty());
+
+            return root;
+        }
+
+        /**
+         * Reads the node without its children.
+         */
+        private JmmNodeImpl readNode() {
+            var node = new JmmNodeImpl(readString());
+
+            var hierarchy = new ArrayList<String>();
+            var hierarchySize = input.readVarint();
+            for (int i = 0; i < hierarchySize; i++) {
+                hierarchy.add(readString());
+            }
+            node.setHierarchy(hierarchies.computeIfAbsent(node.getKind(), kind -> List.copyOf(hierarchy)));
+
+            var numAttributes = input.readVarint();
+            for (int i = 0; i < numAttributes; i++) {
+                var attribute = readString();
+                node.putObject(attribute, readValue());
+            }
+
+            return node;
+        }
+
+        private Object readValue() {
+            var type = input.readVarint();
+            switch (type) {
+                case STRING:
+                    return readString();
+                case NUMBER:
+                    return Integer.toString(input.readVarint());
+                case LIST:
+                    var list = new ArrayList<String>();
+                    var size = input.readVarint();
+                    for (int i = 0; i < size; i++) {
+                        list.add(readString());
+                    }
+                    return list;
+                case FALSE:
+                    return false;
+                case TRUE:
+                    return true;
+                default:
+                    throw new RuntimeException("Unknown attribute type in AST snapshot: " + type);
+            }
+        }
+
+        private String readString() {
+            var id = input.readVarint();
+            if (id >= strings.length) {
+                throw new RuntimeException("Unknown string in AST snapshot: " + id);
+            }
+
+            return strings[id];
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        private void writeVarint(int value) {
+            // 7 bits at a time, the highest bit tells if there are more
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] bytes;
+        private int position;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+            this.position = 0;
+        }
+
+        private boolean isAtEnd() {
+            return position == bytes.length;
+        }
+
+        private byte[] readBytes(int length) {
+            if (length < 0 || length > bytes.length - position) {
+                throw new RuntimeException("AST snapshot is truncated");
+            }
+
+            var result = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return result;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (isAtEnd()) {
+                    throw new RuntimeException("AST snapshot is truncated");
+                }
+
+                var b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+
+            throw new RuntimeException("Invalid varint in AST snapshot");
+        }
+    }
+}
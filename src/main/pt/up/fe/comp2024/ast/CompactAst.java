@@ -0,0 +1,424 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AST kept in parallel arrays instead of one object per node with a map of string attributes.
+ * <p>
+ * Nodes are numbered in breadth-first order, so the children of a node have consecutive numbers. Kinds and attribute
+ * values are stored as ids in tables of distinct strings, and the location of each node as ints. {@link Node} adapts
+ * a node to {@link JmmNode}, so the existing visitors work on this AST unchanged. There is a single adapter per node,
+ * created when the node is first reached, so nodes can still be kept in identity maps.
+ * <p>
+ * The structure of the tree cannot be changed.
+ */
+public class CompactAst {
+
+    private static final String LINE_START = "lineStart";
+    private static final String COL_START = "colStart";
+    private static final String LINE_END = "lineEnd";
+    private static final String COL_END = "colEnd";
+
+    private static final Set<String> LOCATION = Set.of(LINE_START, COL_START, LINE_END, COL_END);
+    private static final Kind[] KINDS = Kind.values();
+
+    // Distinct kinds, with their hierarchy and the Kinds it matches. An EnumSet is a bit mask for up to 64 Kinds, and
+    // still works with more
+    private final String[] kindNames;
+    private final List<List<String>> kindHierarchies;
+    private final List<EnumSet<Kind>> kindSets;
+
+    // Distinct attribute names and values. Values are usually strings, but can be other objects, e.g. lists
+    private final Object[] symbols;
+
+    private final int[] kind;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] numChildren;
+
+    // The attributes of node i are in [attrStart[i], attrStart[i + 1])
+    private final int[] attrStart;
+    private final int[] attrKeys;
+    private final int[] attrValues;
+
+    private final int[] lineStart;
+    private final int[] colStart;
+    private final int[] lineEnd;
+    private final int[] colEnd;
+
+    private final AtomicReferenceArray<Node> nodes;
+
+    // Attributes put after the tree was built, by node
+    private final Map<Integer, Map<String, Object>> added;
+
+    private CompactAst(Builder builder) {
+        this.kindNames = builder.kindIds.keySet().toArray(String[]::new);
+        this.kindHierarchies = builder.kindHierarchies;
+        this.kindSets = builder.kindSets;
+        this.symbols = builder.symbolIds.keySet().toArray();
+        this.kind = builder.kind;
+        this.parent = builder.parent;
+        this.firstChild = builder.firstChild;
+        this.numChildren = builder.numChildren;
+        this.attrStart = builder.attrStart;
+        this.attrKeys = Arrays.copyOf(builder.attrKeys, builder.numAttrs);
+        this.attrValues = Arrays.copyOf(builder.attrValues, builder.numAttrs);
+        this.lineStart = builder.lineStart;
+        this.colStart = builder.colStart;
+        this.lineEnd = builder.lineEnd;
+        this.colEnd = builder.colEnd;
+        this.nodes = new AtomicReferenceArray<>(kind.length);
+        this.added = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Copies the given tree.
+     */
+    public static CompactAst of(JmmNode root) {
+        return new Builder(root).build();
+    }
+
+    public JmmNode getRoot() {
+        return node(0);
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return kind.length;
+    }
+
+    private Node node(int index) {
+        var node = nodes.get(index);
+        if (node != null) {
+            return node;
+        }
+
+        // If another thread created the adapter first, that one is used
+        nodes.compareAndSet(index, null, new Node(index));
+        return nodes.get(index);
+    }
+
+    private int findAttribute(int index, String name) {
+        for (int i = attrStart[index]; i < attrStart[index + 1]; i++) {
+            if (name.equals(symbols[attrKeys[i]])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Node of a {@link CompactAst}, as a {@link JmmNode}.
+     */
+    public class Node implements JmmNode {
+
+        private final int index;
+
+        private Node(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Same as {@link Kind#check(JmmNode)}, without comparing strings.
+         */
+        public boolean isInstance(Kind kind) {
+            return kindSets.get(CompactAst.this.kind[index]).contains(kind);
+        }
+
+        public int getLine() {
+            return lineStart[index];
+        }
+
+        public int getColumn() {
+            return colStart[index];
+        }
+
+        @Override
+        public String getKind() {
+            return kindNames[kind[index]];
+        }
+
+        @Override
+        public Collection<String> getHierarchy() {
+            return kindHierarchies.get(kind[index]);
+        }
+
+        @Deprecated
+        @Override
+        public JmmNode getJmmParent() {
+            return parent[index] < 0 ? null : node(parent[index]);
+        }
+
+        @Override
+        public List<JmmNode> getChildren() {
+            return new AbstractList<>() {
+                @Override
+                public JmmNode get(int i) {
+                    return getJmmChild(i);
+                }
+
+                @Override
+                public int size() {
+                    return numChildren[index];
+                }
+            };
+        }
+
+        @Override
+        public int getNumChildren() {
+            return numChildren[index];
+        }
+
+        @Override
+        public JmmNode getJmmChild(int i) {
+            Objects.checkIndex(i, numChildren[index]);
+            return node(firstChild[index] + i);
+        }
+
+        @Override
+        public Collection<String> getAttributes() {
+            var attributes = new ArrayList<String>();
+            for (int i = attrStart[index]; i < attrStart[index + 1]; i++) {
+                attributes.add((String) symbols[attrKeys[i]]);
+            }
+
+            if (lineStart[index] >= 0) {
+                attributes.addAll(List.of(LINE_START, COL_START, LINE_END, COL_END));
+            }
+
+            var extra = added.get(index);
+            if (extra != null) {
+                extra.keySet().stream().filter(name -> !attributes.contains(name)).forEach(attributes::add);
+            }
+
+            return attributes;
+        }
+
+        @Override
+        public boolean hasAttribute(String attribute) {
+            return getObject(attribute) != null;
+        }
+
+        @Override
+        public Object getObject(String attribute) {
+            var extra = added.get(index);
+            if (extra != null && extra.containsKey(attribute)) {
+                return extra.get(attribute);
+            }
+
+            if (lineStart[index] >= 0 && LOCATION.contains(attribute)) {
+                return String.valueOf(switch (attribute) {
+                    case LINE_START -> lineStart[index];
+                    case COL_START -> colStart[index];
+                    case LINE_END -> lineEnd[index];
+                    default -> colEnd[index];
+                });
+            }
+
+            var attr = findAttribute(index, attribute);
+            return attr < 0 ? null : symbols[attrValues[attr]];
+        }
+
+        @Override
+        public Object putObject(String attribute, Object value) {
+            var previous = getObject(attribute);
+            added.computeIfAbsent(index, key -> new ConcurrentHashMap<>()).put(attribute, value);
+            return previous;
+        }
+
+        @Override
+        public JmmNode copyNode() {
+            var copy = new JmmNodeImpl(getKind());
+            copy.setHierarchy(new ArrayList<>(getHierarchy()));
+            for (var attribute : getAttributes()) {
+                copy.putObject(attribute, getObject(attribute));
+            }
+
+            return copy;
+        }
+
+        @Override
+        public void add(JmmNode child, int index) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setChild(JmmNode child, int index) {
+            throw readOnly();
+        }
+
+        @Override
+        public JmmNode removeJmmChild(int index) {
+            throw readOnly();
+        }
+
+        @Deprecated
+        @Override
+        public int removeJmmChild(JmmNode child) {
+            throw readOnly();
+        }
+
+        @Override
+        public JmmNode detach() {
+            throw readOnly();
+        }
+
+        @Override
+        public void removeParent() {
+            throw readOnly();
+        }
+
+        @Override
+        public void setParent(JmmNode parent) {
+            throw readOnly();
+        }
+
+        private RuntimeException readOnly() {
+            return new UnsupportedOperationException("The structure of a compact AST cannot be changed");
+        }
+
+        @Override
+        public String toString() {
+            var attributes = getAttributes().stream()
+                    .filter(attribute -> !LOCATION.contains(attribute))
+                    .map(attribute -> attribute + ": " + getObject(attribute))
+                    .toList();
+
+            return attributes.isEmpty() ? getKind() : getKind() + " (" + String.join(", ", attributes) + ")";
+        }
+    }
+
+    /**
+     * Copies a tree breadth-first into the arrays of a {@link CompactAst}.
+     */
+    private static class Builder {
+
+        private final List<JmmNode> order;
+
+        private final Map<String, Integer> kindIds;
+        private final List<List<String>> kindHierarchies;
+        private final List<EnumSet<Kind>> kindSets;
+        private final Map<Object, Integer> symbolIds;
+
+        private final int[] kind;
+        private final int[] parent;
+        private final int[] firstChild;
+        private final int[] numChildren;
+        private final int[] attrStart;
+        private int[] attrKeys;
+        private int[] attrValues;
+        private int numAttrs;
+        private final int[] lineStart;
+        private final int[] colStart;
+        private final int[] lineEnd;
+        private final int[] colEnd;
+
+        private Builder(JmmNode root) {
+            this.order = new ArrayList<>();
+            order.add(root);
+            // Children are appended after their parent is reached, so siblings end up next to each other
+            for (int i = 0; i < order.size(); i++) {
+                order.addAll(order.get(i).getChildren());
+            }
+
+            int size = order.size();
+            this.kindIds = new LinkedHashMap<>();
+            this.kindHierarchies = new ArrayList<>();
+            this.kindSets = new ArrayList<>();
+            this.symbolIds = new LinkedHashMap<>();
+            this.kind = new int[size];
+            this.parent = new int[size];
+            this.firstChild = new int[size];
+            this.numChildren = new int[size];
+            this.attrStart = new int[size + 1];
+            this.attrKeys = new int[size * 2];
+            this.attrValues = new int[size * 2];
+            this.numAttrs = 0;
+            this.lineStart = new int[size];
+            this.colStart = new int[size];
+            this.lineEnd = new int[size];
+            this.colEnd = new int[size];
+        }
+
+        private CompactAst build() {
+            var nextChild = 1;
+            parent[0] = -1;
+
+            for (int i = 0; i < order.size(); i++) {
+                var node = order.get(i);
+
+                kind[i] = kindId(node);
+                firstChild[i] = nextChild;
+                numChildren[i] = node.getNumChildren();
+                for (int child = nextChild; child < nextChild + numChildren[i]; child++) {
+                    parent[child] = i;
+                }
+                nextChild += numChildren[i];
+
+                addAttributes(i, node);
+            }
+            attrStart[order.size()] = numAttrs;
+
+            return new CompactAst(this);
+        }
+
+        private void addAttributes(int index, JmmNode node) {
+            attrStart[index] = numAttrs;
+
+            var hasLocation = node.hasAttribute(LINE_START);
+            lineStart[index] = hasLocation ? NodeUtils.getIntegerAttribute(node, LINE_START, "-1") : -1;
+            colStart[index] = hasLocation ? NodeUtils.getIntegerAttribute(node, COL_START, "-1") : -1;
+            lineEnd[index] = hasLocation ? NodeUtils.getIntegerAttribute(node, LINE_END, "-1") : -1;
+            colEnd[index] = hasLocation ? NodeUtils.getIntegerAttribute(node, COL_END, "-1") : -1;
+
+            for (var attribute : node.getAttributes()) {
+                if (hasLocation && LOCATION.contains(attribute)) {
+                    continue;
+                }
+
+                if (numAttrs == attrKeys.length) {
+                    attrKeys = Arrays.copyOf(attrKeys, numAttrs * 2);
+                    attrValues = Arrays.copyOf(attrValues, numAttrs * 2);
+                }
+
+                attrKeys[numAttrs] = symbolId(attribute);
+                attrValues[numAttrs] = symbolId(node.getObject(attribute));
+                numAttrs++;
+            }
+        }
+
+        private int kindId(JmmNode node) {
+            var id = kindIds.get(node.getKind());
+            if (id != null) {
+                return id;
+            }
+
+            var hierarchy = List.copyOf(node.getHierarchy());
+            var kinds = EnumSet.noneOf(Kind.class);
+            for (var kind : KINDS) {
+                if (hierarchy.contains(kind.getNodeName())) {
+                    kinds.add(kind);
+                }
+            }
+
+            id = kindIds.size();
+            kindIds.put(node.getKind(), id);
+            kindHierarchies.add(hierarchy);
+            kindSets.add(kinds);
+
+            return id;
+        }
+
+        private int symbolId(Object symbol) {
+            return symbolIds.computeIfAbsent(symbol, key -> symbolIds.size());
+        }
+    }
+}
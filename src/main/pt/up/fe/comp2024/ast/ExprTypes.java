@@ -0,0 +1,45 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Types of the expressions of an AST, computed once per node and kept by node identity.
+ * <p>
+ * Assumes that the expressions are not changed after their type is computed.
+ */
+public class ExprTypes {
+
+    private final Map<JmmNode, Type> types;
+
+    public ExprTypes() {
+        this.types = Collections.synchronizedMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * @param expr
+     * @param computeType called if the type of the expression was not computed yet
+     * @return the type of the expression
+     */
+    public Type get(JmmNode expr, Supplier<Type> computeType) {
+        var type = types.get(expr);
+        if (type != null) {
+            return type;
+        }
+
+        // Not computeIfAbsent, the type of an expression needs the types of its children
+        type = computeType.get();
+        types.put(expr, type);
+
+        return type;
+    }
+
+    public int size() {
+        return types.size();
+    }
+}
@@ -31,7 +31,9 @@ public enum Kind {
     IF_STMT,
     NEW_ARRAY_EXPR,
     WHILE_STMT,
-    EXPR_STMT;
+    EXPR_STMT,
+    CURLY_STMT,
+    ASSIGN_ARRAY_STMT;
 
 
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT);
@@ -87,6 +89,10 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
+        if (node instanceof CompactAst.Node compactNode) {
+            return compactNode.isInstance(this);
+        }
+
         return node.isInstance(this);
     }
 
@@ -1,11 +1,12 @@
 package pt.up.fe.comp2024.ast;
 
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.MethodScope;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 
-import java.util.List;
 
 public class TypeUtils {
 
@@ -17,12 +18,22 @@ public class TypeUtils {
 
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * With a {@link JmmSymbolTable}, the type of each expression is only computed once.
      *
      * @param expr
      * @param table
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getExprTypes().get(expr, () -> computeExprType(expr, table));
+        }
+
+        return computeExprType(expr, table);
+    }
+
+    private static Type computeExprType(JmmNode expr, SymbolTable table) {
         var kind = Kind.fromString(expr.getKind());
 
         Type type = switch (kind) {
@@ -60,15 +71,17 @@ public class TypeUtils {
         while(!temp.getKind().equals("MethodDecl")){
             temp = temp.getParent();
         }
-        List<Symbol> localVars = table.getLocalVariables(temp.get("name"));
-        List<Symbol> parameters = table.getParameters(temp.get("name"));
-        List<Symbol> fields = table.getFields();
-        List<String> imports = table.getImports();
-        for(Symbol x: localVars) if(x.getName().equals(varRefExpr.get("name"))) return x.getType();
-        for(Symbol x: parameters) if(x.getName().equals(varRefExpr.get("name"))) return x.getType();
-        for(Symbol x: fields) if(x.getName().equals(varRefExpr.get("name"))) return x.getType();
-        for(String x: imports) if(x.equals(varRefExpr.get("name"))) return new Type(varRefExpr.getKind(), false);
-        return new Type("Undefined", false);
+
+        var resolved = MethodScope.get(table, temp.get("name")).resolve(varRefExpr.get("name"));
+        if (resolved.isEmpty()) {
+            return new Type("Undefined", false);
+        }
+
+        if (resolved.get().is(ResolvedSymbol.Kind.IMPORT)) {
+            return new Type(varRefExpr.getKind(), false);
+        }
+
+        return resolved.get().getSymbol().getType();
     }
 
 
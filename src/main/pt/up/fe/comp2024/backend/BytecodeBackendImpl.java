@@ -0,0 +1,22 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+/**
+ * Backend that generates the class file directly from OLLIR, instead of generating Jasmin code that has to be
+ * assembled. Selected with '-backend=bytecode'.
+ */
+public class BytecodeBackendImpl implements JasminBackend {
+
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+
+        var bytecodeGenerator = new BytecodeGenerator(ollirResult);
+        var classBytes = bytecodeGenerator.build();
+
+        return new BytecodeResult(ollirResult, classBytes, bytecodeGenerator.getReports());
+    }
+
+}
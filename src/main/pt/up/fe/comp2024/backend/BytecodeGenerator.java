@@ -0,0 +1,854 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a class file directly from an OllirResult, without going through Jasmin code.
+ * <p>
+ * The generated classes have version 52.0 (Java 8), so they include a StackMapTable attribute in every method that
+ * has branches. The types of the locals in each frame are found with a data-flow analysis over the instructions of
+ * the method, the types in the stack are tracked by {@link CodeBuffer} while the code is generated.
+ * <p>
+ * One BytecodeGenerator instance per OllirResult.
+ */
+public class BytecodeGenerator {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int T_BOOLEAN = 4;
+    private static final int T_INT = 10;
+
+    private static final String OBJECT_CLASS = "java/lang/Object";
+    private static final String INIT = "<init>";
+
+    private final OllirResult ollirResult;
+    private final List<Report> reports;
+
+    private final BiConsumerClassMap<Instruction, CodeBuffer> generators;
+
+    private byte[] classBytes;
+
+    private ClassUnit currentClass;
+    private ImportedClasses importedClasses;
+    private ConstantPool constantPool;
+    private Method currentMethod;
+    private int internalLabels;
+
+    public BytecodeGenerator(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+
+        reports = new ArrayList<>();
+        classBytes = null;
+
+        this.generators = new BiConsumerClassMap<>();
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(CallInstruction.class, this::generateCall);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCond);
+        generators.put(OpCondInstruction.class, this::generateOpCond);
+        generators.put(GotoInstruction.class, this::generateGoto);
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the bytes of the class file
+     */
+    public byte[] build() {
+
+        // This way, build is idempotent
+        if (classBytes == null) {
+            try {
+                classBytes = generateClassUnit(ollirResult.getOllirClass());
+            } catch (IOException e) {
+                throw new RuntimeException("Could not generate class file", e);
+            }
+        }
+
+        return classBytes;
+    }
+
+    private byte[] generateClassUnit(ClassUnit classUnit) throws IOException {
+        currentClass = classUnit;
+        constantPool = new ConstantPool();
+
+        importedClasses = new ImportedClasses(classUnit);
+
+        var className = classUnit.getClassName();
+        var superClass = getSuperClass();
+
+        // Fields and methods are generated first, they add entries to the constant pool
+        var body = new ByteArrayOutputStream();
+        var bodyOut = new DataOutputStream(body);
+
+        var classAccess = ACC_SUPER;
+        if (classUnit.getClassAccessModifier() == AccessModifier.PUBLIC) {
+            classAccess |= ACC_PUBLIC;
+        }
+        if (classUnit.isFinalClass()) {
+            classAccess |= ACC_FINAL;
+        }
+
+        bodyOut.writeShort(classAccess);
+        bodyOut.writeShort(constantPool.addClass(className));
+        bodyOut.writeShort(constantPool.addClass(superClass));
+
+        // interfaces
+        bodyOut.writeShort(0);
+
+        bodyOut.writeShort(classUnit.getNumFields());
+        for (var field : classUnit.getFields()) {
+            generateField(field, bodyOut);
+        }
+
+        // There is always one constructor that receives no arguments, OLLIR constructors are ignored
+        var methods = classUnit.getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .toList();
+
+        bodyOut.writeShort(methods.size() + 1);
+        generateDefaultConstructor(superClass, bodyOut);
+        for (var method : methods) {
+            CompilationStats.current().measureMethod("bytecode", method.getMethodName(), () -> {
+                generateMethod(method, bodyOut);
+                return null;
+            });
+        }
+
+        // attributes
+        bodyOut.writeShort(0);
+
+        var classFile = new ByteArrayOutputStream();
+        var out = new DataOutputStream(classFile);
+        out.writeInt(MAGIC);
+        out.writeShort(0);
+        out.writeShort(MAJOR_VERSION);
+        constantPool.writeTo(out);
+        body.writeTo(out);
+
+        return classFile.toByteArray();
+    }
+
+    private String getSuperClass() {
+        var superClass = currentClass.getSuperClass();
+        return superClass == null ? OBJECT_CLASS : getInternalName(superClass);
+    }
+
+    private void generateField(Field field, DataOutputStream out) throws IOException {
+        var access = getAccessFlags(field.getFieldAccessModifier());
+        if (field.isStaticField()) {
+            access |= ACC_STATIC;
+        }
+        if (field.isFinalField()) {
+            access |= ACC_FINAL;
+        }
+
+        out.writeShort(access);
+        out.writeShort(constantPool.addUtf8(field.getFieldName()));
+        out.writeShort(constantPool.addUtf8(getDescriptor(field.getFieldType())));
+
+        // Only static fields can be initialized with a ConstantValue attribute
+        if (field.isStaticField() && field.isInitialized()) {
+            out.writeShort(1);
+            out.writeShort(constantPool.addUtf8("ConstantValue"));
+            out.writeInt(2);
+            out.writeShort(constantPool.addInteger(field.getInitialValue()));
+        } else {
+            out.writeShort(0);
+        }
+    }
+
+    private void generateDefaultConstructor(String superClass, DataOutputStream out) throws IOException {
+        var code = new CodeBuffer();
+        code.op(CodeBuffer.ALOAD_0, 0, VerificationType.object(constantPool.addClass(currentClass.getClassName())));
+        code.opShort(CodeBuffer.INVOKESPECIAL, constantPool.addMethodRef(superClass, INIT, "()V"), 1, null);
+        code.op(CodeBuffer.RETURN, 0, null);
+        code.unreachable();
+
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(constantPool.addUtf8(INIT));
+        out.writeShort(constantPool.addUtf8("()V"));
+        writeCode(code, 1, List.of(), out);
+    }
+
+    private void generateMethod(Method method, DataOutputStream out) {
+        currentMethod = method;
+        internalLabels = 0;
+
+        var maxLocals = getMaxLocals(method);
+        var instructions = method.getInstructions();
+        var localsIn = computeLocals(method, maxLocals);
+
+        var code = new CodeBuffer();
+        for (int i = 0; i < instructions.size(); i++) {
+            // Instructions that are never reached are not generated, they would need frames of their own
+            if (localsIn[i] == null) {
+                continue;
+            }
+
+            var instruction = instructions.get(i);
+            code.setLocals(toVerificationTypes(localsIn[i]));
+
+            for (var label : method.getLabels(instruction)) {
+                code.placeLabel(label);
+            }
+
+            generators.accept(instruction, code);
+
+            // The result of a call that is not assigned is not used
+            if (instruction instanceof CallInstruction) {
+                var returnType = ((CallInstruction) instruction).getReturnType();
+                if (returnType.getTypeOfElement() != ElementType.VOID) {
+                    code.op(CodeBuffer.POP, 1, null);
+                }
+            }
+        }
+
+        // Void methods may end without a return
+        if (code.isReachable()) {
+            if (method.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                throw new RuntimeException("Method '" + method.getMethodName() + "' can end without returning a value");
+            }
+
+            code.op(CodeBuffer.RETURN, 0, null);
+            code.unreachable();
+        }
+
+        var access = getAccessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) {
+            access |= ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            access |= ACC_FINAL;
+        }
+
+        try {
+            out.writeShort(access);
+            out.writeShort(constantPool.addUtf8(method.getMethodName()));
+            out.writeShort(constantPool.addUtf8(getMethodDescriptor(method)));
+            writeCode(code, maxLocals, toVerificationTypes(getEntryLocals(method, maxLocals)), out);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write method '" + method.getMethodName() + "'", e);
+        }
+
+        currentMethod = null;
+    }
+
+    private void writeCode(CodeBuffer code, int maxLocals, List<VerificationType> initialLocals, DataOutputStream out) throws IOException {
+        var bytecode = code.toByteArray();
+
+        var frames = new ByteArrayOutputStream();
+        if (code.getNumFrames() > 0) {
+            var framesOut = new DataOutputStream(frames);
+            framesOut.writeShort(code.getNumFrames());
+            code.writeFrames(framesOut, initialLocals);
+        }
+
+        // name, length, max stack, max locals, code length, code, exception table, attributes count
+        var attributeLength = 2 + 2 + 4 + bytecode.length + 2 + 2;
+        if (frames.size() > 0) {
+            attributeLength += 2 + 4 + frames.size();
+        }
+
+        // method attributes
+        out.writeShort(1);
+
+        out.writeShort(constantPool.addUtf8("Code"));
+        out.writeInt(attributeLength);
+        out.writeShort(code.getMaxStack());
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+
+        // exception table
+        out.writeShort(0);
+
+        if (frames.size() > 0) {
+            out.writeShort(1);
+            out.writeShort(constantPool.addUtf8("StackMapTable"));
+            out.writeInt(frames.size());
+            frames.writeTo(out);
+        } else {
+            out.writeShort(0);
+        }
+    }
+
+    private int getMaxLocals(Method method) {
+        var maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+
+        for (var descriptor : method.getVarTable().values()) {
+            maxLocals = Math.max(maxLocals, descriptor.getVirtualReg() + 1);
+        }
+
+        return maxLocals;
+    }
+
+    /**
+     * Finds, for each instruction, the type of each register before the instruction executes. A register has a type
+     * only if every path to the instruction stores a value of that type in it.
+     *
+     * @param method
+     * @param maxLocals
+     * @return the descriptor of the type in each register, before each instruction. The entry is null for instructions
+     * that are never reached, and a register is null if it has no value that can be used
+     */
+    private String[][] computeLocals(Method method, int maxLocals) {
+        var instructions = method.getInstructions();
+
+        var indexes = new IdentityHashMap<Instruction, Integer>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        var localsIn = new String[instructions.size()][];
+        if (instructions.isEmpty()) {
+            return localsIn;
+        }
+
+        localsIn[0] = getEntryLocals(method, maxLocals);
+
+        var worklist = new ArrayDeque<Integer>();
+        worklist.add(0);
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.poll();
+            var instruction = instructions.get(index);
+
+            var localsOut = localsIn[index].clone();
+            if (instruction instanceof AssignInstruction) {
+                var dest = ((AssignInstruction) instruction).getDest();
+
+                // Storing in an array element does not change the type of the register of the array
+                if (!(dest instanceof ArrayOperand)) {
+                    var operand = (Operand) dest;
+                    localsOut[getRegister(operand)] = getDescriptor(operand.getType());
+                }
+            }
+
+            for (int successor : getSuccessors(method, instruction, index, indexes)) {
+                var merged = merge(localsIn[successor], localsOut);
+
+                if (!Arrays.equals(merged, localsIn[successor])) {
+                    localsIn[successor] = merged;
+                    worklist.add(successor);
+                }
+            }
+        }
+
+        return localsIn;
+    }
+
+    private String[] getEntryLocals(Method method, int maxLocals) {
+        var locals = new String[maxLocals];
+
+        var register = 0;
+        if (!method.isStaticMethod()) {
+            locals[register++] = "L" + currentClass.getClassName() + ";";
+        }
+
+        for (var param : method.getParams()) {
+            locals[register++] = getDescriptor(param.getType());
+        }
+
+        return locals;
+    }
+
+    private static String[] merge(String[] current, String[] incoming) {
+        if (current == null) {
+            return incoming.clone();
+        }
+
+        var merged = current.clone();
+        for (int i = 0; i < merged.length; i++) {
+            if (merged[i] != null && !merged[i].equals(incoming[i])) {
+                merged[i] = null;
+            }
+        }
+
+        return merged;
+    }
+
+    private List<Integer> getSuccessors(Method method, Instruction instruction, int index, Map<Instruction, Integer> indexes) {
+        var successors = new ArrayList<Integer>(2);
+
+        if (instruction instanceof ReturnInstruction) {
+            return successors;
+        }
+
+        if (instruction instanceof GotoInstruction) {
+            successors.add(getLabelIndex(method, ((GotoInstruction) instruction).getLabel(), indexes));
+            return successors;
+        }
+
+        if (instruction instanceof CondBranchInstruction) {
+            successors.add(getLabelIndex(method, ((CondBranchInstruction) instruction).getLabel(), indexes));
+        }
+
+        if (index + 1 < method.getInstructions().size()) {
+            successors.add(index + 1);
+        }
+
+        return successors;
+    }
+
+    private static int getLabelIndex(Method method, String label, Map<Instruction, Integer> indexes) {
+        var target = method.getLabels().get(label);
+        if (target == null) {
+            throw new RuntimeException("Jump to undefined label '" + label + "' in method '" + method.getMethodName() + "'");
+        }
+
+        return indexes.get(target);
+    }
+
+    private List<VerificationType> toVerificationTypes(String[] locals) {
+        var types = new ArrayList<VerificationType>(locals.length);
+
+        for (var descriptor : locals) {
+            types.add(descriptor == null ? VerificationType.TOP : VerificationType.fromDescriptor(descriptor, constantPool));
+        }
+
+        return types;
+    }
+
+    private void generateAssign(AssignInstruction assign, CodeBuffer code) {
+        var dest = assign.getDest();
+
+        if (dest instanceof ArrayOperand) {
+            var arrayOperand = (ArrayOperand) dest;
+            var arrayType = getVarType(arrayOperand);
+
+            code.local(CodeBuffer.ALOAD, CodeBuffer.ALOAD_0, getRegister(arrayOperand), 0, getType(arrayType));
+            load(arrayOperand.getIndexOperands().get(0), code);
+            generators.accept(assign.getRhs(), code);
+            code.op(getArrayStore(((ArrayType) arrayType).getElementType()), 3, null);
+            return;
+        }
+
+        generators.accept(assign.getRhs(), code);
+
+        var operand = (Operand) dest;
+        if (isIntType(operand.getType())) {
+            code.local(CodeBuffer.ISTORE, CodeBuffer.ISTORE_0, getRegister(operand), 1, null);
+        } else {
+            code.local(CodeBuffer.ASTORE, CodeBuffer.ASTORE_0, getRegister(operand), 1, null);
+        }
+    }
+
+    private void generateSingleOp(SingleOpInstruction singleOp, CodeBuffer code) {
+        load(singleOp.getSingleOperand(), code);
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, CodeBuffer code) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        // Comparisons become a branch that pushes 0 or 1
+        var compare = getCompareOpcode(opType);
+        if (compare != -1) {
+            var trueLabel = newInternalLabel();
+            var endLabel = newInternalLabel();
+
+            generateCompareJump(binaryOp, compare, trueLabel, code);
+            code.op(CodeBuffer.ICONST_0, 0, VerificationType.INTEGER);
+            code.jump(CodeBuffer.GOTO, endLabel, 0);
+            code.placeLabel(trueLabel);
+            code.op(CodeBuffer.ICONST_0 + 1, 0, VerificationType.INTEGER);
+            code.placeLabel(endLabel);
+            return;
+        }
+
+        load(binaryOp.getLeftOperand(), code);
+        load(binaryOp.getRightOperand(), code);
+
+        var opcode = switch (opType) {
+            case ADD -> CodeBuffer.IADD;
+            case SUB -> CodeBuffer.ISUB;
+            case MUL -> CodeBuffer.IMUL;
+            case DIV -> CodeBuffer.IDIV;
+            case SHL -> CodeBuffer.ISHL;
+            case SHR -> CodeBuffer.ISHR;
+            case SHRR -> CodeBuffer.IUSHR;
+            case AND, ANDB -> CodeBuffer.IAND;
+            case OR, ORB -> CodeBuffer.IOR;
+            case XOR -> CodeBuffer.IXOR;
+            default -> throw new NotImplementedException(opType);
+        };
+
+        code.op(opcode, 2, VerificationType.INTEGER);
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, CodeBuffer code) {
+        var opType = unaryOp.getOperation().getOpType();
+        if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+            throw new NotImplementedException(opType);
+        }
+
+        load(unaryOp.getOperand(), code);
+        code.op(CodeBuffer.ICONST_0 + 1, 0, VerificationType.INTEGER);
+        code.op(CodeBuffer.IXOR, 2, VerificationType.INTEGER);
+    }
+
+    private void generateReturn(ReturnInstruction returnInst, CodeBuffer code) {
+        if (!returnInst.hasReturnValue()) {
+            code.op(CodeBuffer.RETURN, 0, null);
+            code.unreachable();
+            return;
+        }
+
+        var operand = returnInst.getOperand();
+        load(operand, code);
+        code.op(isIntType(operand.getType()) ? CodeBuffer.IRETURN : CodeBuffer.ARETURN, 1, null);
+        code.unreachable();
+    }
+
+    private void generatePutField(PutFieldInstruction putField, CodeBuffer code) {
+        var object = putField.getObject();
+        var field = putField.getField();
+
+        load(object, code);
+        load(putField.getValue(), code);
+
+        var fieldRef = constantPool.addFieldRef(getOwner(object), field.getName(), getDescriptor(field.getType()));
+        code.opShort(CodeBuffer.PUTFIELD, fieldRef, 2, null);
+    }
+
+    private void generateGetField(GetFieldInstruction getField, CodeBuffer code) {
+        var object = getField.getObject();
+        var field = getField.getField();
+
+        load(object, code);
+
+        var fieldRef = constantPool.addFieldRef(getOwner(object), field.getName(), getDescriptor(field.getType()));
+        code.opShort(CodeBuffer.GETFIELD, fieldRef, 1, getType(field.getType()));
+    }
+
+    private void generateCall(CallInstruction call, CodeBuffer code) {
+        var callType = call.getInvocationType();
+
+        switch (callType) {
+            case invokestatic -> {
+                var owner = getInternalName(((Operand) call.getCaller()).getName());
+                loadArguments(call, code);
+                invoke(CodeBuffer.INVOKESTATIC, owner, getMethodName(call), call, 0, code);
+            }
+            case invokevirtual -> {
+                var caller = call.getCaller();
+                load(caller, code);
+                loadArguments(call, code);
+                invoke(CodeBuffer.INVOKEVIRTUAL, getOwner(caller), getMethodName(call), call, 1, code);
+            }
+            case invokespecial -> {
+                var caller = call.getCaller();
+                var owner = caller.getType().getTypeOfElement() == ElementType.THIS ? getSuperClass() : getOwner(caller);
+                var methodName = call.getMethodNameTry().map(name -> getMethodName(call)).orElse(INIT);
+                load(caller, code);
+                loadArguments(call, code);
+                invoke(CodeBuffer.INVOKESPECIAL, owner, methodName, call, 1, code);
+            }
+            case NEW -> generateNew(call, code);
+            case arraylength -> {
+                load(call.getCaller(), code);
+                code.op(CodeBuffer.ARRAYLENGTH, 1, VerificationType.INTEGER);
+            }
+            default -> throw new NotImplementedException(callType);
+        }
+    }
+
+    private void generateNew(CallInstruction call, CodeBuffer code) {
+        var returnType = call.getReturnType();
+
+        if (returnType.getTypeOfElement() != ElementType.ARRAYREF) {
+            var classIndex = constantPool.addClass(getInternalName(((ClassType) returnType).getName()));
+            code.opShort(CodeBuffer.NEW, classIndex, 0, VerificationType.object(classIndex));
+            return;
+        }
+
+        // Size of the array
+        loadArguments(call, code);
+
+        var arrayType = getType(returnType);
+        var elementType = ((ArrayType) returnType).getElementType();
+        switch (elementType.getTypeOfElement()) {
+            case INT32 -> code.opByte(CodeBuffer.NEWARRAY, T_INT, 1, arrayType);
+            case BOOLEAN -> code.opByte(CodeBuffer.NEWARRAY, T_BOOLEAN, 1, arrayType);
+            default -> {
+                var elementClass = getDescriptor(elementType);
+                var classIndex = constantPool.addClass(elementClass.substring(1, elementClass.length() - 1));
+                code.opShort(CodeBuffer.ANEWARRAY, classIndex, 1, arrayType);
+            }
+        }
+    }
+
+    private void invoke(int opcode, String owner, String methodName, CallInstruction call, int receivers, CodeBuffer code) {
+        var descriptor = new StringBuilder("(");
+        for (var argument : call.getArguments()) {
+            descriptor.append(getDescriptor(argument.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(call.getReturnType()));
+
+        var methodRef = constantPool.addMethodRef(owner, methodName, descriptor.toString());
+        var push = call.getReturnType().getTypeOfElement() == ElementType.VOID ? null : getType(call.getReturnType());
+        code.opShort(opcode, methodRef, call.getArguments().size() + receivers, push);
+    }
+
+    private void loadArguments(CallInstruction call, CodeBuffer code) {
+        for (var argument : call.getArguments()) {
+            load(argument, code);
+        }
+    }
+
+    private void generateSingleOpCond(SingleOpCondInstruction singleOpCond, CodeBuffer code) {
+        load(singleOpCond.getCondition().getSingleOperand(), code);
+        code.jump(CodeBuffer.IFNE, singleOpCond.getLabel(), 1);
+    }
+
+    private void generateOpCond(OpCondInstruction opCond, CodeBuffer code) {
+        var condition = opCond.getCondition();
+        var opType = condition.getOperation().getOpType();
+
+        if (condition instanceof BinaryOpInstruction && getCompareOpcode(opType) != -1) {
+            generateCompareJump((BinaryOpInstruction) condition, getCompareOpcode(opType), opCond.getLabel(), code);
+            return;
+        }
+
+        // Negations jump when the operand is false
+        if (condition instanceof UnaryOpInstruction) {
+            load(((UnaryOpInstruction) condition).getOperand(), code);
+            code.jump(CodeBuffer.IFEQ, opCond.getLabel(), 1);
+            return;
+        }
+
+        generators.accept(condition, code);
+        code.jump(CodeBuffer.IFNE, opCond.getLabel(), 1);
+    }
+
+    private void generateGoto(GotoInstruction gotoInst, CodeBuffer code) {
+        code.jump(CodeBuffer.GOTO, gotoInst.getLabel(), 0);
+    }
+
+    /**
+     * Jumps to the given label if the comparison is true. Comparisons with the literal 0 use the single operand
+     * version of the branch.
+     */
+    private void generateCompareJump(BinaryOpInstruction binaryOp, int compareOpcode, String label, CodeBuffer code) {
+        load(binaryOp.getLeftOperand(), code);
+
+        var right = binaryOp.getRightOperand();
+        if (right instanceof LiteralElement && ((LiteralElement) right).getLiteral().equals("0")) {
+            // if_icmpeq..if_icmple and ifeq..ifle are in the same order
+            code.jump(compareOpcode - (CodeBuffer.IF_ICMPEQ - CodeBuffer.IFEQ), label, 1);
+            return;
+        }
+
+        load(right, code);
+        code.jump(compareOpcode, label, 2);
+    }
+
+    private static int getCompareOpcode(OperationType opType) {
+        return switch (opType) {
+            case EQ -> CodeBuffer.IF_ICMPEQ;
+            case NEQ -> CodeBuffer.IF_ICMPNE;
+            case LTH -> CodeBuffer.IF_ICMPLT;
+            case GTE -> CodeBuffer.IF_ICMPGE;
+            case GTH -> CodeBuffer.IF_ICMPGT;
+            case LTE -> CodeBuffer.IF_ICMPLE;
+            default -> -1;
+        };
+    }
+
+    private String newInternalLabel() {
+        // '#' cannot appear in OLLIR labels
+        return "#" + internalLabels++;
+    }
+
+    /**
+     * Pushes the value of the given element.
+     */
+    private void load(Element element, CodeBuffer code) {
+        if (element instanceof LiteralElement) {
+            loadLiteral((LiteralElement) element, code);
+            return;
+        }
+
+        var operand = (Operand) element;
+        var elementType = operand.getType().getTypeOfElement();
+
+        if (elementType == ElementType.THIS) {
+            code.op(CodeBuffer.ALOAD_0, 0, getType(operand.getType()));
+            return;
+        }
+
+        if (operand instanceof ArrayOperand) {
+            var arrayOperand = (ArrayOperand) operand;
+            var arrayType = (ArrayType) getVarType(arrayOperand);
+
+            code.local(CodeBuffer.ALOAD, CodeBuffer.ALOAD_0, getRegister(arrayOperand), 0, getType(arrayType));
+            load(arrayOperand.getIndexOperands().get(0), code);
+            code.op(getArrayLoad(arrayType.getElementType()), 2, getType(arrayType.getElementType()));
+            return;
+        }
+
+        if (isIntType(operand.getType())) {
+            code.local(CodeBuffer.ILOAD, CodeBuffer.ILOAD_0, getRegister(operand), 0, VerificationType.INTEGER);
+        } else {
+            code.local(CodeBuffer.ALOAD, CodeBuffer.ALOAD_0, getRegister(operand), 0, getType(operand.getType()));
+        }
+    }
+
+    private void loadLiteral(LiteralElement literal, CodeBuffer code) {
+        if (literal.getType().getTypeOfElement() == ElementType.STRING) {
+            var value = literal.getLiteral().replaceAll("^\"|\"$", "");
+            pushConstant(constantPool.addString(value), getType(literal.getType()), code);
+            return;
+        }
+
+        var value = Integer.parseInt(literal.getLiteral());
+
+        if (value >= -1 && value <= 5) {
+            code.op(CodeBuffer.ICONST_0 + value, 0, VerificationType.INTEGER);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.opByte(CodeBuffer.BIPUSH, value, 0, VerificationType.INTEGER);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.opShort(CodeBuffer.SIPUSH, value, 0, VerificationType.INTEGER);
+        } else {
+            pushConstant(constantPool.addInteger(value), VerificationType.INTEGER, code);
+        }
+    }
+
+    private static void pushConstant(int index, VerificationType type, CodeBuffer code) {
+        if (index < 256) {
+            code.opByte(CodeBuffer.LDC, index, 0, type);
+        } else {
+            code.opShort(CodeBuffer.LDC_W, index, 0, type);
+        }
+    }
+
+    private int getRegister(Operand operand) {
+        var descriptor = currentMethod.getVarTable().get(operand.getName());
+        if (descriptor == null) {
+            throw new RuntimeException("Variable '" + operand.getName() + "' is not in the var table of method '" + currentMethod.getMethodName() + "'");
+        }
+
+        return descriptor.getVirtualReg();
+    }
+
+    // The type of an array operand is the type of its elements, the var table has the type of the array
+    private Type getVarType(ArrayOperand operand) {
+        return currentMethod.getVarTable().get(operand.getName()).getVarType();
+    }
+
+    private static boolean isIntType(Type type) {
+        var elementType = type.getTypeOfElement();
+        return elementType == ElementType.INT32 || elementType == ElementType.BOOLEAN;
+    }
+
+    private static int getArrayLoad(Type elementType) {
+        return switch (elementType.getTypeOfElement()) {
+            case INT32 -> CodeBuffer.IALOAD;
+            case BOOLEAN -> CodeBuffer.BALOAD;
+            default -> CodeBuffer.AALOAD;
+        };
+    }
+
+    private static int getArrayStore(Type elementType) {
+        return switch (elementType.getTypeOfElement()) {
+            case INT32 -> CodeBuffer.IASTORE;
+            case BOOLEAN -> CodeBuffer.BASTORE;
+            default -> CodeBuffer.AASTORE;
+        };
+    }
+
+    private VerificationType getType(Type type) {
+        return VerificationType.fromDescriptor(getDescriptor(type), constantPool);
+    }
+
+    private String getOwner(Element object) {
+        var type = object.getType();
+
+        if (type.getTypeOfElement() == ElementType.THIS) {
+            return currentClass.getClassName();
+        }
+
+        return getInternalName(((ClassType) type).getName());
+    }
+
+    private static String getMethodName(CallInstruction call) {
+        return ((LiteralElement) call.getMethodName()).getLiteral().replace("\"", "");
+    }
+
+    private static int getAccessFlags(AccessModifier accessModifier) {
+        return switch (accessModifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+
+    private String getMethodDescriptor(Method method) {
+        var descriptor = new StringBuilder("(");
+        for (var param : method.getParams()) {
+            descriptor.append(getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(method.getReturnType()));
+
+        return descriptor.toString();
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case STRING -> "Ljava/lang/String;";
+            case THIS -> "L" + currentClass.getClassName() + ";";
+            case OBJECTREF, CLASS -> "L" + getInternalName(((ClassType) type).getName()) + ";";
+            case ARRAYREF -> {
+                var arrayType = (ArrayType) type;
+                var dimensions = "[".repeat(Math.max(1, arrayType.getNumDimensions()));
+                yield dimensions + getDescriptor(arrayType.getElementType());
+            }
+        };
+    }
+
+    /**
+     * @param className a simple class name, as used in OLLIR
+     * @return the internal name of the class, using the imports of the current class
+     */
+    private String getInternalName(String className) {
+        if (className.equals(currentClass.getClassName())) {
+            return className;
+        }
+
+        return importedClasses.getInternalName(className);
+    }
+}
@@ -0,0 +1,123 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link BytecodeBackendImpl}, which already has the bytes of the class file.
+ * <p>
+ * Compiling the result writes the bytes directly, without assembling Jasmin code. The Jasmin code is only generated if
+ * it is requested, e.g. to print it. Results read back from the compilation cache only have the bytes, and no Jasmin
+ * code.
+ */
+public class BytecodeResult extends JasminResult {
+
+    private final OllirResult ollirResult;
+    private final byte[] classBytes;
+
+    private String jasminCode;
+
+    public BytecodeResult(OllirResult ollirResult, byte[] classBytes, List<Report> reports) {
+        super(ollirResult, null, reports);
+
+        this.ollirResult = ollirResult;
+        this.classBytes = classBytes;
+        this.jasminCode = null;
+    }
+
+    private BytecodeResult(String className, byte[] classBytes, Map<String, String> config) {
+        super(className, null, new ArrayList<>(), config);
+
+        this.ollirResult = null;
+        this.classBytes = classBytes;
+        this.jasminCode = null;
+    }
+
+    /**
+     * @param classBytes the bytes of a class file generated by this backend
+     * @param config
+     * @return a result with the given class, e.g. read from the compilation cache
+     */
+    public static BytecodeResult fromClassBytes(byte[] classBytes, Map<String, String> config) {
+        return new BytecodeResult(readClassName(classBytes), classBytes, config);
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    @Override
+    public synchronized String getJasminCode() {
+        if (jasminCode == null) {
+            if (ollirResult == null) {
+                throw new RuntimeException("Jasmin code of class '" + getClassName() + "' is not available, its class was read from the cache");
+            }
+
+            jasminCode = new JasminGenerator(ollirResult).build();
+        }
+
+        return jasminCode;
+    }
+
+    @Override
+    public File compile(File outputDir) {
+        var classFile = new File(outputDir, getClassName() + ".class");
+        SpecsIo.mkdir(outputDir);
+
+        try {
+            Files.write(classFile.toPath(), classBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + classFile + "'", e);
+        }
+
+        return classFile;
+    }
+
+    /**
+     * Reads the name of the class from the constant pool of the class file.
+     */
+    private static String readClassName(byte[] classBytes) {
+        try (var input = new DataInputStream(new ByteArrayInputStream(classBytes))) {
+            // Magic, minor and major version
+            input.skipBytes(8);
+
+            int poolSize = input.readUnsignedShort();
+            var utf8 = new String[poolSize];
+            var classNames = new int[poolSize];
+
+            for (int i = 1; i < poolSize; i++) {
+                int tag = input.readUnsignedByte();
+                switch (tag) {
+                    case 1 -> utf8[i] = input.readUTF();
+                    case 7 -> classNames[i] = input.readUnsignedShort();
+                    case 8, 16, 19, 20 -> input.skipBytes(2);
+                    case 15 -> input.skipBytes(3);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> input.skipBytes(4);
+                    case 5, 6 -> {
+                        // Longs and doubles take two entries
+                        input.skipBytes(8);
+                        i++;
+                    }
+                    default -> throw new RuntimeException("Unknown constant pool tag " + tag + " in class file");
+                }
+            }
+
+            // Access flags, then this class
+            input.skipBytes(2);
+            return utf8[classNames[input.readUnsignedShort()]].replace('/', '.');
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the name of the class file", e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package pt.up.fe.comp2024.backend;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Assembles Jasmin code in memory with the Jasmin API and writes the resulting .class files to a directory or a jar.
+ * <p>
+ * Unlike {@link JasminResult#compile(File)}, no intermediate .j file is written and no other process is started.
+ * Results of {@link BytecodeBackendImpl} already have the bytes of the class file, and are not assembled again.
+ * Instances can be shared between threads, e.g. by all the files of a batch.
+ */
+public class ClassFileWriter implements AutoCloseable {
+
+    private static final String JAR_EXTENSION = ".jar";
+    private static final String CLASS_EXTENSION = ".class";
+
+    // The Jasmin assembler keeps some state in static fields, only one class can be assembled at a time
+    private static final Object ASSEMBLER_LOCK = new Object();
+
+    private final File destination;
+    private final JarOutputStream jar;
+
+    /**
+     * @param destination a directory, or a file ending in '.jar'
+     */
+    public ClassFileWriter(File destination) {
+        this.destination = destination;
+
+        if (!destination.getName().endsWith(JAR_EXTENSION)) {
+            this.jar = null;
+            return;
+        }
+
+        var parent = destination.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        try {
+            this.jar = new JarOutputStream(new FileOutputStream(destination), manifest);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create jar file '" + destination + "'", e);
+        }
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    /**
+     * Assembles the code of the given result and writes the class file.
+     *
+     * @param jasminResult
+     * @return the internal name of the written class, e.g. 'foo/Bar'
+     */
+    public String write(JasminResult jasminResult) {
+        var assembled = jasminResult instanceof BytecodeResult ?
+                new AssembledClass(jasminResult.getClassName(), ((BytecodeResult) jasminResult).getClassBytes()) :
+                assembleClass(jasminResult.getJasminCode(), jasminResult.getClassName());
+        var internalName = assembled.className.replace('.', '/');
+
+        if (jar != null) {
+            writeJarEntry(internalName, assembled.bytes);
+        } else {
+            writeFile(internalName, assembled.bytes);
+        }
+
+        return internalName;
+    }
+
+    /**
+     * Assembles the given Jasmin code in memory.
+     *
+     * @param jasminCode
+     * @param sourceName name used in error messages
+     * @return the bytes of the class file
+     */
+    public static byte[] assemble(String jasminCode, String sourceName) {
+        return assembleClass(jasminCode, sourceName).bytes;
+    }
+
+    private static AssembledClass assembleClass(String jasminCode, String sourceName) {
+        synchronized (ASSEMBLER_LOCK) {
+            var classFile = new ClassFile();
+
+            try {
+                classFile.readJasmin(new StringReader(jasminCode), sourceName, false);
+            } catch (Exception e) {
+                throw new RuntimeException("Exception while assembling Jasmin code of '" + sourceName + "': " + e.getMessage(), e);
+            }
+
+            if (classFile.errorCount() > 0) {
+                throw new RuntimeException("Found " + classFile.errorCount() + " errors while assembling Jasmin code of '" + sourceName + "'");
+            }
+
+            var bytes = new ByteArrayOutputStream();
+            try {
+                classFile.write(bytes);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not write class file of '" + sourceName + "': " + e.getMessage(), e);
+            }
+
+            return new AssembledClass(classFile.getClassName(), bytes.toByteArray());
+        }
+    }
+
+    private synchronized void writeJarEntry(String internalName, byte[] bytes) {
+        try {
+            jar.putNextEntry(new JarEntry(internalName + CLASS_EXTENSION));
+            jar.write(bytes);
+            jar.closeEntry();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class '" + internalName + "' to jar file '" + destination + "'", e);
+        }
+    }
+
+    private void writeFile(String internalName, byte[] bytes) {
+        var classFile = new File(destination, internalName + CLASS_EXTENSION);
+        classFile.getParentFile().mkdirs();
+
+        try {
+            // Write to a temporary file first, so that a concurrent reader never sees a partial class
+            var tempFile = File.createTempFile(classFile.getName(), ".tmp", classFile.getParentFile());
+            Files.write(tempFile.toPath(), bytes);
+            Files.move(tempFile.toPath(), classFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + classFile + "'", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (jar == null) {
+            return;
+        }
+
+        try {
+            jar.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close jar file '" + destination + "'", e);
+        }
+    }
+
+    private static class AssembledClass {
+        private final String className;
+        private final byte[] bytes;
+
+        private AssembledClass(String className, byte[] bytes) {
+            this.className = className;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bytecode of a single method that is being built by {@link BytecodeGenerator}.
+ * <p>
+ * Keeps track of the types in the operand stack while instructions are added, which gives the exact max stack and
+ * the stack part of the frames that are written in the StackMapTable attribute. The locals part of the frames is
+ * given by the generator, with {@link #setLocals(List)}.
+ */
+class CodeBuffer {
+
+    static final int ICONST_0 = 3;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int ILOAD = 21;
+    static final int ALOAD = 25;
+    static final int ILOAD_0 = 26;
+    static final int ALOAD_0 = 42;
+    static final int IALOAD = 46;
+    static final int AALOAD = 50;
+    static final int BALOAD = 51;
+    static final int ISTORE = 54;
+    static final int ASTORE = 58;
+    static final int ISTORE_0 = 59;
+    static final int ASTORE_0 = 75;
+    static final int IASTORE = 79;
+    static final int AASTORE = 83;
+    static final int BASTORE = 84;
+    static final int POP = 87;
+    static final int IADD = 96;
+    static final int ISUB = 100;
+    static final int IMUL = 104;
+    static final int IDIV = 108;
+    static final int ISHL = 120;
+    static final int ISHR = 122;
+    static final int IUSHR = 124;
+    static final int IAND = 126;
+    static final int IOR = 128;
+    static final int IXOR = 130;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IF_ICMPEQ = 159;
+    static final int IF_ICMPNE = 160;
+    static final int IF_ICMPLT = 161;
+    static final int IF_ICMPGE = 162;
+    static final int IF_ICMPGT = 163;
+    static final int IF_ICMPLE = 164;
+    static final int GOTO = 167;
+    static final int IRETURN = 172;
+    static final int ARETURN = 176;
+    static final int RETURN = 177;
+    static final int GETFIELD = 180;
+    static final int PUTFIELD = 181;
+    static final int INVOKEVIRTUAL = 182;
+    static final int INVOKESPECIAL = 183;
+    static final int INVOKESTATIC = 184;
+    static final int NEW = 187;
+    static final int NEWARRAY = 188;
+    static final int ANEWARRAY = 189;
+    static final int ARRAYLENGTH = 190;
+    static final int WIDE = 196;
+
+    private static final int SAME_FRAME_MAX_DELTA = 63;
+    private static final int SAME_LOCALS_1_STACK_ITEM = 64;
+    private static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+    private static final int SAME_FRAME_EXTENDED = 251;
+    private static final int FULL_FRAME = 255;
+
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private byte[] code;
+    private int length;
+
+    private final List<VerificationType> stack;
+    private int maxStack;
+    private boolean reachable;
+
+    private List<VerificationType> locals;
+
+    private final Map<String, Integer> labels;
+    private final Map<String, List<VerificationType>> labelStacks;
+    private final List<Jump> jumps;
+    private final TreeMap<Integer, Frame> frames;
+
+    CodeBuffer() {
+        code = new byte[64];
+        length = 0;
+        stack = new ArrayList<>();
+        maxStack = 0;
+        reachable = true;
+        locals = List.of();
+        labels = new HashMap<>();
+        labelStacks = new HashMap<>();
+        jumps = new ArrayList<>();
+        frames = new TreeMap<>();
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * Sets the types of the local variables for the frames of the next labels.
+     *
+     * @param locals
+     */
+    void setLocals(List<VerificationType> locals) {
+        this.locals = locals;
+    }
+
+    /**
+     * Adds an instruction without operands.
+     *
+     * @param opcode
+     * @param pops number of stack entries consumed by the instruction
+     * @param push type pushed by the instruction, or null
+     */
+    void op(int opcode, int pops, VerificationType push) {
+        writeByte(opcode);
+        update(pops, push);
+    }
+
+    /**
+     * Adds an instruction with a one byte operand.
+     */
+    void opByte(int opcode, int operand, int pops, VerificationType push) {
+        writeByte(opcode);
+        writeByte(operand);
+        update(pops, push);
+    }
+
+    /**
+     * Adds an instruction with a two byte operand, e.g. an index in the constant pool.
+     */
+    void opShort(int opcode, int operand, int pops, VerificationType push) {
+        writeByte(opcode);
+        writeShort(operand);
+        update(pops, push);
+    }
+
+    /**
+     * Adds a load or store of a local variable, using the short form when the register allows it.
+     *
+     * @param opcode    e.g. ILOAD
+     * @param opcode0   e.g. ILOAD_0
+     * @param register
+     * @param pops
+     * @param push
+     */
+    void local(int opcode, int opcode0, int register, int pops, VerificationType push) {
+        if (register < 4) {
+            writeByte(opcode0 + register);
+        } else if (register < 256) {
+            writeByte(opcode);
+            writeByte(register);
+        } else {
+            writeByte(WIDE);
+            writeByte(opcode);
+            writeShort(register);
+        }
+
+        update(pops, push);
+    }
+
+    /**
+     * Adds a branch to the given label.
+     *
+     * @param opcode
+     * @param label
+     * @param pops number of stack entries consumed by the branch
+     */
+    void jump(int opcode, String label, int pops) {
+        jumps.add(new Jump(length, label));
+        writeByte(opcode);
+        writeShort(0);
+        update(pops, null);
+
+        labelStacks.putIfAbsent(label, new ArrayList<>(stack));
+
+        if (opcode == GOTO) {
+            unreachable();
+        }
+    }
+
+    /**
+     * Marks the end of a basic block that does not fall through, e.g. after a return.
+     */
+    void unreachable() {
+        reachable = false;
+        stack.clear();
+    }
+
+    /**
+     * Places the given label at the current position, recording a frame with the current locals and stack.
+     *
+     * @param label
+     */
+    void placeLabel(String label) {
+        if (labels.containsKey(label)) {
+            throw new RuntimeException("Label '" + label + "' is defined more than once");
+        }
+
+        labels.put(label, length);
+
+        // Code after a goto or return is only reached by jumps
+        if (!reachable) {
+            stack.clear();
+            stack.addAll(labelStacks.getOrDefault(label, List.of()));
+            reachable = true;
+        }
+
+        frames.putIfAbsent(length, new Frame(locals, new ArrayList<>(stack)));
+    }
+
+    /**
+     * @return the bytecode of the method, with the offsets of every jump resolved
+     */
+    byte[] toByteArray() {
+        if (length > MAX_CODE_LENGTH) {
+            throw new RuntimeException("Method is too large, has " + length + " bytes of code");
+        }
+
+        for (var jump : jumps) {
+            var target = labels.get(jump.label);
+            if (target == null) {
+                throw new RuntimeException("Jump to undefined label '" + jump.label + "'");
+            }
+
+            var offset = target - jump.position;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Jump to label '" + jump.label + "' is too far, offset is " + offset);
+            }
+
+            code[jump.position + 1] = (byte) (offset >> 8);
+            code[jump.position + 2] = (byte) offset;
+        }
+
+        return Arrays.copyOf(code, length);
+    }
+
+    int getNumFrames() {
+        return frames.size();
+    }
+
+    /**
+     * Writes the entries of the StackMapTable attribute, using the most compact frame type for each entry.
+     *
+     * @param out
+     * @param initialLocals the locals at the start of the method, which are the implicit first frame
+     */
+    void writeFrames(DataOutputStream out, List<VerificationType> initialLocals) throws IOException {
+        var previousLocals = trim(initialLocals);
+        var previousOffset = -1;
+
+        for (var entry : frames.entrySet()) {
+            var offsetDelta = entry.getKey() - previousOffset - 1;
+            var frame = entry.getValue();
+            var frameLocals = trim(frame.locals);
+
+            if (frameLocals.equals(previousLocals) && frame.stack.isEmpty()) {
+                if (offsetDelta <= SAME_FRAME_MAX_DELTA) {
+                    out.writeByte(offsetDelta);
+                } else {
+                    out.writeByte(SAME_FRAME_EXTENDED);
+                    out.writeShort(offsetDelta);
+                }
+            } else if (frameLocals.equals(previousLocals) && frame.stack.size() == 1) {
+                if (offsetDelta <= SAME_FRAME_MAX_DELTA) {
+                    out.writeByte(SAME_LOCALS_1_STACK_ITEM + offsetDelta);
+                } else {
+                    out.writeByte(SAME_LOCALS_1_STACK_ITEM_EXTENDED);
+                    out.writeShort(offsetDelta);
+                }
+                frame.stack.get(0).writeTo(out);
+            } else {
+                out.writeByte(FULL_FRAME);
+                out.writeShort(offsetDelta);
+                writeTypes(out, frameLocals);
+                writeTypes(out, frame.stack);
+            }
+
+            previousLocals = frameLocals;
+            previousOffset = entry.getKey();
+        }
+    }
+
+    private static void writeTypes(DataOutputStream out, List<VerificationType> types) throws IOException {
+        out.writeShort(types.size());
+        for (var type : types) {
+            type.writeTo(out);
+        }
+    }
+
+    // Trailing unused locals do not need to be written
+    private static List<VerificationType> trim(List<VerificationType> locals) {
+        var end = locals.size();
+        while (end > 0 && locals.get(end - 1).isTop()) {
+            end--;
+        }
+
+        return locals.subList(0, end);
+    }
+
+    private void update(int pops, VerificationType push) {
+        if (pops > stack.size()) {
+            throw new RuntimeException("Stack underflow at offset " + length + ": needs " + pops + " entries, has " + stack.size());
+        }
+
+        for (int i = 0; i < pops; i++) {
+            stack.remove(stack.size() - 1);
+        }
+
+        if (push != null) {
+            stack.add(push);
+        }
+
+        maxStack = Math.max(maxStack, stack.size());
+    }
+
+    private void writeByte(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+
+        code[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        writeByte(value >> 8);
+        writeByte(value);
+    }
+
+    private static class Jump {
+        private final int position;
+        private final String label;
+
+        private Jump(int position, String label) {
+            this.position = position;
+            this.label = label;
+        }
+    }
+
+    private static class Frame {
+        private final List<VerificationType> locals;
+        private final List<VerificationType> stack;
+
+        private Frame(List<VerificationType> locals, List<VerificationType> stack) {
+            this.locals = locals;
+            this.stack = stack;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file that is being built by {@link BytecodeGenerator}.
+ * <p>
+ * Each constant is added only once, adding an existing constant returns its index.
+ */
+class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final Map<String, Integer> indexes;
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream entries;
+
+    // Index 0 is not used
+    private int count;
+
+    ConstantPool() {
+        indexes = new HashMap<>();
+        bytes = new ByteArrayOutputStream();
+        entries = new DataOutputStream(bytes);
+        count = 1;
+    }
+
+    int addUtf8(String value) {
+        var key = "U" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            entries.writeByte(UTF8);
+            entries.writeUTF(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not add constant '" + value + "'", e);
+        }
+
+        return register(key);
+    }
+
+    int addInteger(int value) {
+        var key = "I" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        write(INTEGER, value >>> 16, value & 0xFFFF);
+        return register(key);
+    }
+
+    /**
+     * @param internalName e.g. 'java/lang/String', or the descriptor of an array type
+     */
+    int addClass(String internalName) {
+        var key = "C" + internalName;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var nameIndex = addUtf8(internalName);
+        write(CLASS, nameIndex);
+        return register(key);
+    }
+
+    int addString(String value) {
+        var key = "S" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var valueIndex = addUtf8(value);
+        write(STRING, valueIndex);
+        return register(key);
+    }
+
+    int addFieldRef(String owner, String name, String descriptor) {
+        return addMemberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    int addMethodRef(String owner, String name, String descriptor) {
+        return addMemberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int addMemberRef(int tag, String owner, String name, String descriptor) {
+        var key = "M" + tag + owner + "." + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var classIndex = addClass(owner);
+        var nameAndTypeIndex = addNameAndType(name, descriptor);
+        write(tag, classIndex, nameAndTypeIndex);
+        return register(key);
+    }
+
+    private int addNameAndType(String name, String descriptor) {
+        var key = "N" + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var nameIndex = addUtf8(name);
+        var descriptorIndex = addUtf8(descriptor);
+        write(NAME_AND_TYPE, nameIndex, descriptorIndex);
+        return register(key);
+    }
+
+    private void write(int tag, int... shorts) {
+        try {
+            entries.writeByte(tag);
+            for (var value : shorts) {
+                entries.writeShort(value);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not add constant with tag " + tag, e);
+        }
+    }
+
+    private int register(String key) {
+        if (count >= MAX_ENTRIES) {
+            throw new RuntimeException("Too many constants in class, the limit is " + MAX_ENTRIES);
+        }
+
+        var index = count;
+        indexes.put(key, index);
+        count++;
+        return index;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+}
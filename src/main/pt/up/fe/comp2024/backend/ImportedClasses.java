@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.ClassUnit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Internal names of the classes imported by an OLLIR class, by their simple name, e.g. 'Bar' -> 'foo/Bar'.
+ */
+class ImportedClasses {
+
+    private final Map<String, String> internalNames;
+
+    ImportedClasses(ClassUnit classUnit) {
+        this.internalNames = new HashMap<>();
+
+        // If two imports have the same simple name, the first one is used
+        for (var importName : classUnit.getImports()) {
+            var simpleName = importName.substring(importName.lastIndexOf('.') + 1);
+            internalNames.putIfAbsent(simpleName, importName.replace('.', '/'));
+        }
+    }
+
+    /**
+     * @param className a simple class name, as used in OLLIR
+     * @return the internal name of the imported class, or the given name if no import has it
+     */
+    String getInternalName(String className) {
+        return internalNames.getOrDefault(className, className);
+    }
+}
@@ -4,10 +4,10 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.stats.CompilationStats;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.utilities.StringLines;
-import pt.up.fe.comp2024.backend.WordNumberAssociation;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +37,12 @@ public class JasminGenerator {
 
     Method currentMethod;
     ClassUnit currentClass;
+    private ImportedClasses importedClasses;
+
+    // Height of the operand stack at the current point of the generated code, and its maximum in the current method
+    private int stackSize;
+    private int maxStackSize;
+    private int internalLabels;
     private final FunctionClassMap<TreeNode, String> generators;
 
     public JasminGenerator(OllirResult ollirResult) {
@@ -84,6 +90,8 @@ public class JasminGenerator {
         this.currentClass = classUnit;
         var code = new StringBuilder();
 
+        importedClasses = new ImportedClasses(classUnit);
+
         // generate class name
         var className = classUnit.getClassName();
         var classAccessModifier = classUnit.getClassAccessModifier().toString().toLowerCase();
@@ -170,13 +178,19 @@ public class JasminGenerator {
 
 
     private String generateMethod(Method method) {
+        return CompilationStats.current().measureMethod("jasmin", method.getMethodName(), () -> generateMethodCode(method));
+    }
+
+    private String generateMethodCode(Method method) {
 
         // set method
         currentMethod = method;
 
         var code = new StringBuilder();
         var tempcode = new StringBuilder();
-        var stackSize = 0;
+        stackSize = 0;
+        maxStackSize = 0;
+        internalLabels = 0;
         // calculate modifier
         var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
                 method.getMethodAccessModifier().name().toLowerCase() + " " :
@@ -203,7 +217,20 @@ public class JasminGenerator {
             for(String label : method.getLabels(inst)) {
                 tempcode.append(TAB + label).append(":\n");
             }
-            var lines = StringLines.getLines(generators.apply(inst));
+            var instCode = generators.apply(inst);
+
+            // The value returned by a call that is not assigned is not used
+            if (inst instanceof CallInstruction call && returnsValue(call)) {
+                instCode += "pop" + NL;
+                popStack(1);
+            }
+
+            if (stackSize != 0) {
+                throw new RuntimeException("Stack height is " + stackSize + " after instruction '" + inst
+                        + "' of method '" + methodName + "', expected 0");
+            }
+
+            var lines = StringLines.getLines(instCode);
             for (var line : lines) {
                 if (line.startsWith("ifne")) {
                     tempcode.append(line).append(NL);
@@ -220,8 +247,7 @@ public class JasminGenerator {
             }
         }
         code.append(TAB).append(".limit locals ").append(maxLocals + 1).append(NL);
-        stackSize = dealWithStack(tempcode);
-        code.append(TAB).append(".limit stack ").append(stackSize).append(NL);
+        code.append(TAB).append(".limit stack ").append(maxStackSize).append(NL);
         code.append(tempcode);
         code.append(".end method\n");
         // unset method
@@ -255,9 +281,11 @@ public class JasminGenerator {
                 var index = ((ArrayOperand) lhs).getIndexOperands().get(0);
                 var reg = currentMethod.getVarTable().get(((ArrayOperand) lhs).getName()).getVirtualReg();
                 code.append(dealLoadAssing("aload",reg) + NL);
+                pushStack(1);
                 code.append(generators.apply(index));
                 code.append(generators.apply(assign.getRhs()));
                 code.append("iastore\n");
+                popStack(3);
 
             }
             case "class org.specs.comp.ollir.Operand" -> {
@@ -270,6 +298,7 @@ public class JasminGenerator {
 
                     default -> throw new NotImplementedException(operand.getType().getTypeOfElement());
                 }
+                popStack(1);
             }
         }
 
@@ -284,14 +313,28 @@ public class JasminGenerator {
         var conditionSingleOp = singleOpcCond.getCondition().getSingleOperand();
         code.append(generators.apply(conditionSingleOp));
         code.append("ifne " + singleOpcCond.getLabel()).append("\n");
+        popStack(1);
         return code.toString();
     }
 
     private String generateOpCondInst(OpCondInstruction opCond){
-        var code = new StringBuilder();
         var condition = opCond.getCondition();
-        code.append(generators.apply(condition));
-        code.append(opCond.getLabel());
+
+        if (condition instanceof BinaryOpInstruction binaryOp && getCompareInstruction(binaryOp) != null) {
+            return generateCompareJump(binaryOp, opCond.getLabel());
+        }
+
+        var code = new StringBuilder();
+
+        // Negations jump when the operand is false
+        if (condition instanceof UnaryOpInstruction unaryOp) {
+            code.append(generators.apply(unaryOp.getOperand()));
+            code.append("ifeq ").append(opCond.getLabel()).append(NL);
+        } else {
+            code.append(generators.apply(condition));
+            code.append("ifne ").append(opCond.getLabel()).append(NL);
+        }
+        popStack(1);
         return code.toString();
     }
 
@@ -318,6 +361,7 @@ public class JasminGenerator {
         else {
             code.append("ldc " + number);
         }
+        pushStack(1);
         return code.append(NL).toString();
     }
 
@@ -328,10 +372,13 @@ public class JasminGenerator {
             var index = ((ArrayOperand) operand).getIndexOperands().get(0);
             var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
             code.append(dealLoadAssing("aload",reg) + NL);
+            pushStack(1);
             code.append(generators.apply(index));
             code.append("iaload\n");
+            popStack(1);
             return code.toString();
         } else {
+            pushStack(1);
             var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
             return switch (operand.getType().getTypeOfElement()){
                 case THIS -> "aload_0" + NL;
@@ -353,6 +400,9 @@ public class JasminGenerator {
             case NOTB -> "iconst_1" + NL + "ixor" + NL;
             default -> throw new NotImplementedException(unaryOp.getOperation().getOpType());
         };
+        // iconst_1 and ixor
+        pushStack(1);
+        popStack(1);
         code.append(op).append(NL);
         return code.toString();
 
@@ -361,6 +411,21 @@ public class JasminGenerator {
     private String generateBinaryOp(BinaryOpInstruction binaryOp) {
         var code = new StringBuilder();
 
+        // Comparisons become a branch that pushes 0 or 1
+        if (getCompareInstruction(binaryOp) != null) {
+            var trueLabel = newInternalLabel();
+            var endLabel = newInternalLabel();
+
+            code.append(generateCompareJump(binaryOp, trueLabel));
+            code.append("iconst_0").append(NL);
+            code.append("goto ").append(endLabel).append(NL);
+            code.append(trueLabel).append(":").append(NL);
+            code.append("iconst_1").append(NL);
+            code.append(endLabel).append(":").append(NL);
+            pushStack(1);
+            return code.toString();
+        }
+
         // load values on the left and on the right
         code.append(generators.apply(binaryOp.getLeftOperand()));
         code.append(generators.apply(binaryOp.getRightOperand()));
@@ -371,23 +436,47 @@ public class JasminGenerator {
             case MUL -> "imul";
             case SUB -> "isub";
             case DIV -> "idiv";
-            case LTH -> "if_icmplt ";
-            case GTE -> "if_icmpge ";
-            case EQ -> "if_icmpeq ";
-            case LTE -> "if_icmple ";
-            case GTH -> "if_icmpgt ";
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         };
 
-        if(op.equals("if_icmplt " ) || op.equals("if_icmpge ") || op.equals("if_icmpeq ") || op.equals("if_icmple ") || op.equals("if_icmpgt ")){
-            code.append(op);
-        } else {
-            code.append(op).append(NL);
-        }
+        code.append(op).append(NL);
+        popStack(1);
 
         return code.toString();
     }
 
+    /**
+     * Jumps to the given label if the comparison is true.
+     */
+    private String generateCompareJump(BinaryOpInstruction binaryOp, String label) {
+        var code = new StringBuilder();
+        code.append(generators.apply(binaryOp.getLeftOperand()));
+        code.append(generators.apply(binaryOp.getRightOperand()));
+        code.append(getCompareInstruction(binaryOp)).append(" ").append(label).append(NL);
+        popStack(2);
+        return code.toString();
+    }
+
+    /**
+     * @return the branch instruction of a comparison, or null if the operation is not a comparison
+     */
+    private static String getCompareInstruction(BinaryOpInstruction binaryOp) {
+        return switch (binaryOp.getOperation().getOpType()) {
+            case EQ -> "if_icmpeq";
+            case NEQ -> "if_icmpne";
+            case LTH -> "if_icmplt";
+            case GTE -> "if_icmpge";
+            case GTH -> "if_icmpgt";
+            case LTE -> "if_icmple";
+            default -> null;
+        };
+    }
+
+    private String newInternalLabel() {
+        // '#' cannot appear in OLLIR labels
+        return "#" + internalLabels++;
+    }
+
     private String generateReturn(ReturnInstruction returnInst) {
         var code = new StringBuilder();
 
@@ -400,6 +489,7 @@ public class JasminGenerator {
             } else {
                 code.append("areturn").append(NL);
             }
+            popStack(1);
         } else {
             code.append("return").append(NL);
         }
@@ -417,6 +507,7 @@ public class JasminGenerator {
         var className = getImportedClassName(operand1.getType().getTypeOfElement().toString());
         var name = ((Operand) operand2).getName();
         code.append("putfield ").append(className).append("/").append(name).append(" ").append(getJasminType(operand3.getType().toString())).append(NL);
+        popStack(2);
 
 
         // generate code for loading what's on the right
@@ -472,6 +563,7 @@ public class JasminGenerator {
         code.append(call.getArguments().stream().map(element -> getJasminTypeOfElement(element.getType())).collect(Collectors.joining()));
         code.append(")");
         code.append(getJasminTypeOfElement(call.getReturnType())).append(NL);
+        invokeStack(call, 1);
         return code.toString();
     }
 
@@ -493,6 +585,7 @@ public class JasminGenerator {
 
         code.append(")");
         code.append(getJasminTypeOfElement(call.getReturnType())).append(NL);
+        invokeStack(call, 0);
         return code.toString();
     }
 
@@ -512,6 +605,7 @@ public class JasminGenerator {
         }
         code.append(")");
         code.append(getJasminTypeOfElement(call.getReturnType())).append(NL);
+        invokeStack(call, 1);
         return code.toString();
     }
 
@@ -540,13 +634,16 @@ public class JasminGenerator {
     }
 
     private String callObj(CallInstruction call){
+        // The arguments of the constructor are passed to the invokespecial of '<init>', not to 'new'
+        if (!call.getArguments().isEmpty()) {
+            throw new NotImplementedException("arguments of 'new' for class " + generateClassName(call));
+        }
+
         var code = new StringBuilder();
         var className = generateClassName(call);
-        for (Element element : call.getArguments()){
-            code.append(generators.apply(element));
-        }
         code.append("new ");
         code.append(className).append(NL);
+        pushStack(1);
         return code.toString();
 
     }
@@ -560,10 +657,16 @@ public class JasminGenerator {
         switch (call.getInvocationType()){
             case NEW ->{
                 code.append("newarray int" + NL);
+                // Pops the size and pushes the array
+                popStack(call.getArguments().size());
+                pushStack(1);
             }
             case arraylength -> {
                 code.append(generators.apply(call.getCaller()));
                 code.append("arraylength" + NL);
+                // Pops the array and pushes its length
+                popStack(1);
+                pushStack(1);
             }
             default -> throw new NotImplementedException(call.getInvocationType());
         }
@@ -594,15 +697,50 @@ public class JasminGenerator {
         }
     }
 
+    /**
+     * @param className a simple class name, as used in OLLIR, or 'THIS'
+     * @return the internal name of the class, using the imports of the current class
+     */
     private String getImportedClassName(String className) {
 
         String result = "THIS".equals(className) ? this.currentClass.getClassName() : className;
 
-        return this.currentClass.getImports().stream()
-                .filter(importName -> importName.endsWith(result))
-                .findFirst()
-                .map(importName -> importName.replaceAll("\\.", "/"))
-                .orElse(result);
+        return importedClasses.getInternalName(result);
+    }
+
+    private void pushStack(int count) {
+        stackSize += count;
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    private void popStack(int count) {
+        stackSize -= count;
+    }
+
+    /**
+     * Updates the stack for an invoke instruction, which pops its arguments and the object it is called on, and pushes
+     * the returned value, if any.
+     *
+     * @param call
+     * @param objects 1 if the call pops an object reference, 0 for static calls
+     */
+    private void invokeStack(CallInstruction call, int objects) {
+        popStack(call.getArguments().size() + objects);
+
+        if (call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+            pushStack(1);
+        }
+    }
+
+    /**
+     * @param call
+     * @return true if the call leaves a value on the stack; 'new' and '<init>' are only used through an assignment
+     */
+    private boolean returnsValue(CallInstruction call) {
+        return switch (call.getInvocationType()) {
+            case NEW, invokespecial -> false;
+            default -> call.getReturnType().getTypeOfElement() != ElementType.VOID;
+        };
     }
 
     private String dealLoadAssing(String instruction, Integer reg){
@@ -613,21 +751,6 @@ public class JasminGenerator {
         }
 
     }
-
-    private Integer dealWithStack(StringBuilder code){
-        WordNumberAssociation wordNumberAssociation = new WordNumberAssociation();
-        var stackSize = 0;
-        var maxSize = 0;
-        var lines = code.toString().split("\n");
-        for (var line : lines){
-            stackSize += wordNumberAssociation.getNumberFromLine(line);
-            if (stackSize > maxSize){
-                maxSize = stackSize;
-            }
-
-        }
-        return maxSize;
-    }
 }
 
 
@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Type of a local variable or stack entry, as written in the frames of a StackMapTable attribute.
+ */
+class VerificationType {
+
+    private static final int TOP_TAG = 0;
+    private static final int INTEGER_TAG = 1;
+    private static final int OBJECT_TAG = 7;
+
+    static final VerificationType TOP = new VerificationType(TOP_TAG, 0);
+    static final VerificationType INTEGER = new VerificationType(INTEGER_TAG, 0);
+
+    private final int tag;
+    private final int classIndex;
+
+    private VerificationType(int tag, int classIndex) {
+        this.tag = tag;
+        this.classIndex = classIndex;
+    }
+
+    /**
+     * @param classIndex index of the class in the constant pool
+     */
+    static VerificationType object(int classIndex) {
+        return new VerificationType(OBJECT_TAG, classIndex);
+    }
+
+    /**
+     * @param descriptor a field descriptor, e.g. 'I' or 'Ljava/lang/String;'
+     * @param constantPool
+     * @return the type of a value with the given descriptor
+     */
+    static VerificationType fromDescriptor(String descriptor, ConstantPool constantPool) {
+        return switch (descriptor.charAt(0)) {
+            case 'I', 'Z', 'B', 'C', 'S' -> INTEGER;
+            case 'L' -> object(constantPool.addClass(descriptor.substring(1, descriptor.length() - 1)));
+            case '[' -> object(constantPool.addClass(descriptor));
+            default -> throw new RuntimeException("Unsupported type in stack map frame: '" + descriptor + "'");
+        };
+    }
+
+    boolean isTop() {
+        return tag == TOP_TAG;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(tag);
+
+        if (tag == OBJECT_TAG) {
+            out.writeShort(classIndex);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof VerificationType)) {
+            return false;
+        }
+
+        var that = (VerificationType) o;
+        return tag == that.tag && classIndex == that.classIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tag, classIndex);
+    }
+}
@@ -0,0 +1,210 @@
+package pt.up.fe.comp2024.batch;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.comp2024.backend.ClassFileWriter;
+import pt.up.fe.comp2024.stats.CompilationStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles several Java-- files in parallel.
+ * <p>
+ * The files to compile are given with '-batch', which can be a directory (all .jmm files inside it are compiled), a
+ * glob (e.g. 'src/**&#47;*.jmm') or a manifest file with one path per line. Files are compiled on a work-stealing pool
+ * with the number of threads given by '-j'. If '-d' is given, the class files of every file are written to the same
+ * directory or jar.
+ */
+public class BatchCompiler {
+
+    private static final String JMM_EXTENSION = ".jmm";
+
+    private final Map<String, String> config;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+    }
+
+    public BatchResult run() {
+        var batchInput = CompilerConfig.getBatchInput(config)
+                .orElseThrow(() -> new RuntimeException("Expected a batch input, use '-batch=<DIR|GLOB|MANIFEST>'"));
+
+        return compile(collectInputs(batchInput));
+    }
+
+    /**
+     * Compiles the given files, one task per file. The results are in the same order as the given files.
+     *
+     * @param inputFiles
+     * @return
+     */
+    public BatchResult compile(List<File> inputFiles) {
+        return compile(inputFiles, Map.of());
+    }
+
+    /**
+     * Same as {@link #compile(List)}, reusing the given results of files that were already parsed.
+     *
+     * @param inputFiles
+     * @param parsed     results of parsing some of the files, with the same configuration
+     * @return
+     */
+    public BatchResult compile(List<File> inputFiles, Map<File, JmmParserResult> parsed) {
+        ExecutorService pool = Executors.newWorkStealingPool(CompilerConfig.getThreads(config));
+        var classWriter = CompilerConfig.getClassOutput(config).map(ClassFileWriter::new).orElse(null);
+
+        try {
+            var futures = new ArrayList<Future<BatchResult.Entry>>();
+            for (var inputFile : inputFiles) {
+                futures.add(pool.submit(() -> compileFile(inputFile, parsed.get(inputFile), classWriter)));
+            }
+
+            var entries = new ArrayList<BatchResult.Entry>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    entries.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while compiling '" + inputFiles.get(i) + "'", e);
+                } catch (ExecutionException e) {
+                    entries.add(BatchResult.Entry.failure(inputFiles.get(i), e.getCause(), "", 0,
+                            CompilationStats.disabled()));
+                }
+            }
+
+            return new BatchResult(entries);
+        } finally {
+            pool.shutdownNow();
+
+            if (classWriter != null) {
+                classWriter.close();
+            }
+        }
+    }
+
+    private BatchResult.Entry compileFile(File inputFile, JmmParserResult parsed, ClassFileWriter classWriter) {
+        long start = System.nanoTime();
+
+        var stats = CompilerConfig.getStats(config).isPresent() ?
+                new CompilationStats(inputFile.getPath()) :
+                CompilationStats.disabled();
+
+        // Kept with the entry of the file, the outputs of files compiled in parallel would be interleaved
+        var emitted = new StringBuilder();
+
+        try {
+            // Each file gets its own copy of the configuration
+            var fileConfig = new HashMap<>(config);
+            CompilerConfig.setInputFile(fileConfig, inputFile);
+
+            var jasminResult = Launcher.compile(inputFile.toPath(), parsed, fileConfig, stats,
+                    output -> emitted.append(output).append("\n"));
+
+            if (classWriter != null && jasminResult != null) {
+                Launcher.writeClass(classWriter, jasminResult, stats);
+            }
+
+            return BatchResult.Entry.success(inputFile, emitted.toString(), System.nanoTime() - start, stats);
+        } catch (RuntimeException e) {
+            return BatchResult.Entry.failure(inputFile, e, emitted.toString(), System.nanoTime() - start, stats);
+        }
+    }
+
+    /**
+     * Resolves the value of '-batch' into a list of files, sorted by path.
+     *
+     * @param batchInput a directory, a glob or a manifest file
+     * @return
+     */
+    public static List<File> collectInputs(String batchInput) {
+        var inputPath = Paths.get(batchInput);
+
+        if (isGlob(batchInput)) {
+            return collectGlob(batchInput);
+        }
+
+        if (Files.isDirectory(inputPath)) {
+            return collectDirectory(inputPath);
+        }
+
+        if (Files.isRegularFile(inputPath)) {
+            // A single source file, not a manifest
+            if (batchInput.endsWith(JMM_EXTENSION)) {
+                return List.of(inputPath.toAbsolutePath().toFile());
+            }
+
+            return collectManifest(inputPath);
+        }
+
+        throw new RuntimeException("Option '-batch' expects a directory, a glob or a manifest file, got '" + batchInput + "'");
+    }
+
+    private static boolean isGlob(String batchInput) {
+        return batchInput.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    private static List<File> collectDirectory(Path directory) {
+        return walk(directory, path -> path.toString().endsWith(JMM_EXTENSION));
+    }
+
+    private static List<File> collectGlob(String glob) {
+        var normalized = glob.replace('\\', '/');
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+
+        // Start walking from the longest prefix of the glob that has no wildcards
+        var firstWildcard = 0;
+        while (!isGlob(String.valueOf(normalized.charAt(firstWildcard)))) {
+            firstWildcard++;
+        }
+        var lastSeparator = normalized.lastIndexOf('/', firstWildcard);
+
+        if (lastSeparator == -1) {
+            var root = Paths.get(".");
+            return walk(root, path -> matcher.matches(root.relativize(path)));
+        }
+
+        return walk(Paths.get(normalized.substring(0, lastSeparator + 1)), matcher::matches);
+    }
+
+    private static List<File> collectManifest(Path manifest) {
+        var baseDir = manifest.toAbsolutePath().getParent();
+
+        try (Stream<String> lines = Files.lines(manifest)) {
+            return lines.map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> baseDir.resolve(line).normalize().toFile())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read manifest file '" + manifest + "'", e);
+        }
+    }
+
+    private static List<File> walk(Path root, Predicate<Path> filter) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .map(path -> path.toAbsolutePath().normalize().toFile())
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list files in '" + root + "'", e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pt.up.fe.comp2024.batch;
+
+import pt.up.fe.comp2024.stats.CompilationStats;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Results of a batch compilation, one entry per file, in the order the files were given.
+ */
+public class BatchResult {
+
+    private final List<Entry> entries;
+
+    public BatchResult(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public long getNumFailures() {
+        return entries.stream().filter(entry -> !entry.isSuccess()).count();
+    }
+
+    /**
+     * @return the stats of each file, if they were collected
+     */
+    public List<CompilationStats> getStats() {
+        return entries.stream()
+                .map(Entry::getStats)
+                .filter(CompilationStats::isEnabled)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if all files compiled without errors
+     */
+    public boolean isSuccess() {
+        return getNumFailures() == 0;
+    }
+
+    /**
+     * @return a line per file with its status and what '-emit' asked for, followed by the totals
+     */
+    public String getSummary() {
+        var summary = new StringBuilder();
+
+        for (var entry : entries) {
+            summary.append(entry).append("\n");
+            summary.append(entry.getEmitted());
+        }
+
+        var failures = getNumFailures();
+        summary.append("Compiled ").append(entries.size()).append(" file(s): ")
+                .append(entries.size() - failures).append(" succeeded, ")
+                .append(failures).append(" failed");
+
+        return summary.toString();
+    }
+
+    public static class Entry {
+
+        private final File file;
+        private final String error;
+        private final String emitted;
+        private final long timeNanos;
+        private final CompilationStats stats;
+
+        private Entry(File file, String error, String emitted, long timeNanos, CompilationStats stats) {
+            this.file = file;
+            this.error = error;
+            this.emitted = emitted;
+            this.timeNanos = timeNanos;
+            this.stats = stats;
+        }
+
+        public static Entry success(File file, String emitted, long timeNanos, CompilationStats stats) {
+            return new Entry(file, null, emitted, timeNanos, stats);
+        }
+
+        public static Entry failure(File file, Throwable exception, String emitted, long timeNanos,
+                                    CompilationStats stats) {
+            var message = exception.getMessage() != null ? exception.getMessage() : exception.getClass().getSimpleName();
+            return new Entry(file, message, emitted, timeNanos, stats);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return what '-emit' asked for, one line per output, or an empty string
+         */
+        public String getEmitted() {
+            return emitted;
+        }
+
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        public CompilationStats getStats() {
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            var status = isSuccess() ? "[OK]     " : "[FAILED] ";
+            var line = status + file + " (" + TimeUnit.NANOSECONDS.toMillis(timeNanos) + " ms)";
+
+            if (!isSuccess()) {
+                // Only the first line, the complete message can span several lines (e.g. OLLIR parsing errors)
+                line += ": " + error.lines().findFirst().orElse("");
+            }
+
+            return line;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package pt.up.fe.comp2024.cache;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.comp2024.ast.AstSnapshot;
+import pt.up.fe.comp2024.backend.BytecodeResult;
+import pt.up.fe.comp2024.parser.MappedCharStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * On-disk cache of compilation results, addressed by the contents of the source.
+ * <p>
+ * The key of an entry is a hash of the source code, of the options that change the generated code ('-o', '-r' and
+ * '-backend') and of the compiler version. Imported classes do not take part in the key, since only their names end up
+ * in the generated code. Each entry is a '.j' file with the Jasmin code, or a '.class' file with the class generated
+ * by the bytecode backend.
+ * <p>
+ * The cache also keeps the AST of each source, in a '.ast' file with a {@link AstSnapshot}. Its key only depends on the
+ * source and the compiler version, so the AST is reused when only the options change.
+ * <p>
+ * The cache is bounded in size. When it grows past the limit, the least recently used entries are removed (reading an
+ * entry updates its modification time).
+ */
+public class CompilationCache {
+
+    private static final String JASMIN_EXTENSION = ".j";
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String AST_EXTENSION = ".ast";
+
+    // Several threads (batch mode, server) can write to the same cache
+    private static final Object EVICTION_LOCK = new Object();
+
+    private static String compilerVersion = null;
+
+    private final File cacheDir;
+    private final long maxSize;
+
+    public CompilationCache(File cacheDir, long maxSize) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new RuntimeException("Could not create cache folder '" + cacheDir + "'");
+        }
+    }
+
+    public static Optional<CompilationCache> fromConfig(Map<String, String> config) {
+        return CompilerConfig.getCacheDir(config)
+                .map(cacheDir -> new CompilationCache(cacheDir, CompilerConfig.getCacheSize(config)));
+    }
+
+    public String getKey(String code, Map<String, String> config) {
+        return getKey(toBytes(code), getOptions(config));
+    }
+
+    /**
+     * Same as {@link #getKey(String, Map)}, but hashes the bytes of a file directly, without decoding its code.
+     *
+     * @param code bytes of the file, e.g. mapped with {@link MappedCharStream#map}; its position is not changed
+     * @param config
+     */
+    public String getKey(ByteBuffer code, Map<String, String> config) {
+        return getKey(code.duplicate(), getOptions(config));
+    }
+
+    /**
+     * @param code
+     * @return the key of the AST of the given code
+     */
+    public String getAstKey(String code) {
+        return getKey(toBytes(code), "ast");
+    }
+
+    /**
+     * Same as {@link #getAstKey(String)}, but hashes the bytes of a file directly, without decoding its code.
+     *
+     * @param code bytes of the file; its position is not changed
+     */
+    public String getAstKey(ByteBuffer code) {
+        return getKey(code.duplicate(), "ast");
+    }
+
+    private static ByteBuffer toBytes(String code) {
+        return ByteBuffer.wrap(code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] getOptions(Map<String, String> config) {
+        return new String[]{
+                Boolean.toString(CompilerConfig.getOptimize(config)),
+                Integer.toString(CompilerConfig.getRegisterAllocation(config)),
+                CompilerConfig.getBackend(config)
+        };
+    }
+
+    private String getKey(ByteBuffer code, String... options) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(getCompilerVersion().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            for (var option : options) {
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update(code);
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param key
+     * @param config
+     * @return the cached result for the given key, if present. With the bytecode backend, it is a
+     * {@link BytecodeResult} with the cached class file
+     */
+    public Optional<JasminResult> getJasmin(String key, Map<String, String> config) {
+        if (CompilerConfig.getBackend(config).equals(CompilerConfig.BYTECODE_BACKEND)) {
+            return readBytes(key, CLASS_EXTENSION).map(classBytes -> BytecodeResult.fromClassBytes(classBytes, config));
+        }
+
+        return read(key, JASMIN_EXTENSION)
+                .map(jasminCode -> new JasminResult(getClassName(jasminCode), jasminCode, new ArrayList<>(), config));
+    }
+
+    /**
+     * @param key
+     * @return the cached AST snapshot for the given key, if present
+     */
+    public Optional<byte[]> getAst(String key) {
+        return readBytes(key, AST_EXTENSION);
+    }
+
+    public void putAst(String key, byte[] snapshot) {
+        write(key, AST_EXTENSION, snapshot);
+
+        evict();
+    }
+
+    /**
+     * Results of the bytecode backend keep their class file, so that their Jasmin code is never generated.
+     */
+    public void put(String key, JasminResult jasminResult) {
+        if (jasminResult instanceof BytecodeResult bytecodeResult) {
+            write(key, CLASS_EXTENSION, bytecodeResult.getClassBytes());
+        } else {
+            write(key, JASMIN_EXTENSION, jasminResult.getJasminCode());
+        }
+
+        evict();
+    }
+
+    private Optional<String> read(String key, String extension) {
+        return readBytes(key, extension).map(contents -> new String(contents, StandardCharsets.UTF_8));
+    }
+
+    private Optional<byte[]> readBytes(String key, String extension) {
+        var file = new File(cacheDir, key + extension);
+
+        try {
+            var contents = Files.readAllBytes(file.toPath());
+            // Mark entry as recently used
+            file.setLastModified(System.currentTimeMillis());
+            return Optional.of(contents);
+        } catch (IOException e) {
+            // Not in the cache, or evicted in the meantime
+            return Optional.empty();
+        }
+    }
+
+    private void write(String key, String extension, String contents) {
+        write(key, extension, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(String key, String extension, byte[] contents) {
+        try {
+            // Write to a temporary file and move it, so that readers never see partial entries
+            Path tempFile = Files.createTempFile(cacheDir.toPath(), key, ".tmp");
+            Files.write(tempFile, contents);
+            Files.move(tempFile, new File(cacheDir, key + extension).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to cache folder '" + cacheDir + "'", e);
+        }
+    }
+
+    /**
+     * Removes the least recently used files until the cache is below its maximum size.
+     */
+    private void evict() {
+        synchronized (EVICTION_LOCK) {
+            var files = cacheDir.listFiles((dir, name) -> name.endsWith(JASMIN_EXTENSION) || name.endsWith(CLASS_EXTENSION)
+                    || name.endsWith(AST_EXTENSION));
+            if (files == null) {
+                return;
+            }
+
+            long size = Arrays.stream(files).mapToLong(File::length).sum();
+            if (size <= maxSize) {
+                return;
+            }
+
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (var file : files) {
+                if (size <= maxSize) {
+                    break;
+                }
+
+                var fileSize = file.length();
+                if (file.delete()) {
+                    size -= fileSize;
+                }
+            }
+        }
+    }
+
+    private static String getClassName(String jasminCode) {
+        // First line is '.class [modifiers] <name>'
+        var classLine = jasminCode.lines().findFirst().orElse("");
+        return classLine.substring(classLine.lastIndexOf(' ') + 1);
+    }
+
+    /**
+     * Identifies the build of the compiler, so that entries created by other builds are never used. Uses the
+     * modification time of the jar, or of the newest class when running from the build folder.
+     */
+    private static synchronized String getCompilerVersion() {
+        if (compilerVersion == null) {
+            var location = new File(Launcher.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+
+            long lastModified = location.lastModified();
+            if (location.isDirectory()) {
+                try (var files = Files.walk(location.toPath())) {
+                    lastModified = files.mapToLong(path -> path.toFile().lastModified()).max().orElse(lastModified);
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not read compiler classes in '" + location + "'", e);
+                }
+            }
+
+            var version = Launcher.class.getPackage().getImplementationVersion();
+            compilerVersion = (version == null ? "dev" : version) + "-" + lastModified;
+        }
+
+        return compilerVersion;
+    }
+}
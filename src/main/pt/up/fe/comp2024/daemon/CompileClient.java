@@ -0,0 +1,50 @@
+package pt.up.fe.comp2024.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Sends a compilation request to a {@link CompileServer} and prints its answer.
+ */
+public class CompileClient {
+
+    /**
+     * @param port   port where the server is listening
+     * @param config configuration of the compilation, paths should be absolute
+     * @return the exit code sent by the server
+     */
+    public static int compile(int port, Map<String, String> config) {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            for (var option : config.entrySet()) {
+                out.println(option.getKey() + "=" + option.getValue());
+            }
+            out.println();
+            out.flush();
+
+            int exitCode = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(CompileServer.EXIT_PREFIX)) {
+                    exitCode = Integer.parseInt(line.substring(CompileServer.EXIT_PREFIX.length()));
+                } else {
+                    System.out.println(line);
+                }
+            }
+
+            return exitCode;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Could not communicate with compile server on port " + port, e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.daemon;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.batch.BatchCompiler;
+import pt.up.fe.comp2024.batch.BatchResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived compiler that receives compilation requests over a loopback socket.
+ * <p>
+ * Since the JVM is kept alive between requests, classes of all stages stay loaded and JIT-compiled, and the DFA cache
+ * of the ANTLR parser (which is static) stays warm.
+ * <p>
+ * Protocol: the client sends the compiler configuration, one 'key=value' line per option, followed by an empty line.
+ * The server answers with the summary of the compilation (see {@link BatchResult#getSummary()}) and a last line
+ * 'EXIT &lt;code&gt;' with the exit code the client should use.
+ */
+public class CompileServer implements Runnable, AutoCloseable {
+
+    static final String EXIT_PREFIX = "EXIT ";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService pool;
+
+    /**
+     * @param port    port to listen to, 0 to use any free port
+     * @param threads maximum number of requests handled at the same time
+     */
+    public CompileServer(int port, int threads) {
+        try {
+            this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compile server on port " + port, e);
+        }
+
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts requests until the server is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!serverSocket.isClosed()) {
+                var socket = serverSocket.accept();
+                pool.submit(() -> handle(socket));
+            }
+        } catch (IOException e) {
+            // Thrown by accept() when the server is closed
+            if (!serverSocket.isClosed()) {
+                throw new RuntimeException("Compile server stopped unexpectedly", e);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close compile server", e);
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            var config = readConfig(in);
+
+            try {
+                var result = compile(config);
+                out.println(result.getSummary());
+                out.println(EXIT_PREFIX + (result.isSuccess() ? 0 : 1));
+            } catch (RuntimeException e) {
+                out.println("[FAILED] " + e.getMessage());
+                out.println(EXIT_PREFIX + 1);
+            }
+
+        } catch (IOException e) {
+            // The client went away, there is no one to answer to
+        }
+    }
+
+    private static Map<String, String> readConfig(BufferedReader in) throws IOException {
+        var config = new HashMap<String, String>();
+
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            var equalIndex = line.indexOf('=');
+            if (equalIndex == -1) {
+                throw new IOException("Malformed request line '" + line + "'");
+            }
+
+            config.put(line.substring(0, equalIndex), line.substring(equalIndex + 1));
+        }
+
+        return config;
+    }
+
+    private static BatchResult compile(Map<String, String> config) {
+        var compiler = new BatchCompiler(config);
+
+        if (CompilerConfig.getBatchInput(config).isPresent()) {
+            return compiler.run();
+        }
+
+        var inputFile = CompilerConfig.getInputFile(config)
+                .orElseThrow(() -> new RuntimeException("Expected an input file in the request"));
+
+        return compiler.compile(List.of(inputFile));
+    }
+}
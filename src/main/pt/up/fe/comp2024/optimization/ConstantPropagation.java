@@ -0,0 +1,281 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Replaces the uses of int and boolean variables that always hold the same constant with that constant, and folds
+ * the operations whose operands are all constants.
+ * <p>
+ * The constants of each variable are found with a forward data-flow analysis over the instructions of the method,
+ * so a variable that is reassigned inside a loop is only constant if every path gives it the same value.
+ */
+public class ConstantPropagation {
+
+    // In a state, a variable without an entry was not assigned yet, and an empty value means it is not a constant
+    private static final OptionalInt NOT_CONSTANT = OptionalInt.empty();
+
+    private Set<String> variables;
+
+    public void optimize(ClassUnit classUnit) {
+        for (var method : classUnit.getMethods()) {
+            optimize(method);
+        }
+    }
+
+    private void optimize(Method method) {
+        variables = new HashSet<>();
+        var entry = new HashMap<String, OptionalInt>();
+
+        for (var var : method.getVarTable().entrySet()) {
+            var descriptor = var.getValue();
+            if (descriptor.getScope() == VarScope.FIELD || descriptor.getVarType() == null) {
+                continue;
+            }
+
+            var type = descriptor.getVarType().getTypeOfElement();
+            if (type != ElementType.INT32 && type != ElementType.BOOLEAN) {
+                continue;
+            }
+
+            variables.add(var.getKey());
+            if (descriptor.getScope() == VarScope.PARAMETER) {
+                entry.put(var.getKey(), NOT_CONSTANT);
+            }
+        }
+
+        var states = solve(method, entry);
+
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var state = states.get(instructions.get(i));
+
+            // Unreachable
+            if (state == null) {
+                continue;
+            }
+
+            var inst = instructions.get(i);
+            var folded = rewrite(inst, state);
+            if (folded != inst) {
+                replace(method, i, folded);
+            }
+        }
+    }
+
+    private Map<Instruction, Map<String, OptionalInt>> solve(Method method, Map<String, OptionalInt> entry) {
+        var instructions = method.getInstructions();
+        var states = new HashMap<Instruction, Map<String, OptionalInt>>();
+
+        if (instructions.isEmpty()) {
+            return states;
+        }
+
+        states.put(instructions.get(0), entry);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = instructions.get(i);
+                var in = states.get(inst);
+                if (in == null) {
+                    continue;
+                }
+
+                var out = transfer(inst, in);
+                for (var successor : successors(method, i)) {
+                    var previous = states.get(successor);
+                    var merged = previous == null ? out : meet(previous, out);
+                    if (!merged.equals(previous)) {
+                        states.put(successor, merged);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return states;
+    }
+
+    // The CFG of the method is not used, since folding replaces some of the instructions
+    private static List<Instruction> successors(Method method, int index) {
+        var inst = method.getInstructions().get(index);
+        var next = index + 1 < method.getInstructions().size() ? method.getInstructions().get(index + 1) : null;
+
+        return switch (inst.getInstType()) {
+            case RETURN -> List.of();
+            case GOTO -> List.of(method.getLabels().get(((GotoInstruction) inst).getLabel()));
+            case BRANCH -> {
+                var target = method.getLabels().get(((CondBranchInstruction) inst).getLabel());
+                yield next == null ? List.of(target) : List.of(target, next);
+            }
+            default -> next == null ? List.of() : List.of(next);
+        };
+    }
+
+    private static Map<String, OptionalInt> meet(Map<String, OptionalInt> state1, Map<String, OptionalInt> state2) {
+        var merged = new HashMap<>(state1);
+
+        for (var entry : state2.entrySet()) {
+            merged.merge(entry.getKey(), entry.getValue(), (value1, value2) -> value1.equals(value2) ? value1 : NOT_CONSTANT);
+        }
+
+        return merged;
+    }
+
+    private Map<String, OptionalInt> transfer(Instruction inst, Map<String, OptionalInt> in) {
+        if (!(inst instanceof AssignInstruction assign)) {
+            return in;
+        }
+
+        if (assign.getDest() instanceof ArrayOperand || !(assign.getDest() instanceof Operand dest)
+                || !variables.contains(dest.getName())) {
+            return in;
+        }
+
+        var out = new HashMap<>(in);
+        out.put(dest.getName(), evaluate(assign.getRhs(), in));
+        return out;
+    }
+
+    private OptionalInt evaluate(Instruction inst, Map<String, OptionalInt> state) {
+        return switch (inst.getInstType()) {
+            case NOPER -> valueOf(((SingleOpInstruction) inst).getSingleOperand(), state);
+            case UNARYOPER -> {
+                var unary = (UnaryOpInstruction) inst;
+                var operand = valueOf(unary.getOperand(), state);
+                if (operand.isEmpty() || unary.getOperation().getOpType() != OperationType.NOTB) {
+                    yield NOT_CONSTANT;
+                }
+
+                yield OptionalInt.of(operand.getAsInt() == 0 ? 1 : 0);
+            }
+            case BINARYOPER -> {
+                var binary = (BinaryOpInstruction) inst;
+                var left = valueOf(binary.getLeftOperand(), state);
+                var right = valueOf(binary.getRightOperand(), state);
+                if (left.isEmpty() || right.isEmpty()) {
+                    yield NOT_CONSTANT;
+                }
+
+                yield fold(binary.getOperation().getOpType(), left.getAsInt(), right.getAsInt());
+            }
+            default -> NOT_CONSTANT;
+        };
+    }
+
+    private static OptionalInt fold(OperationType operation, int left, int right) {
+        return switch (operation) {
+            case ADD -> OptionalInt.of(left + right);
+            case SUB -> OptionalInt.of(left - right);
+            case MUL -> OptionalInt.of(left * right);
+            // Division by zero is left for the program to throw
+            case DIV -> right == 0 ? NOT_CONSTANT : OptionalInt.of(left / right);
+            case LTH -> OptionalInt.of(left < right ? 1 : 0);
+            case GTH -> OptionalInt.of(left > right ? 1 : 0);
+            case LTE -> OptionalInt.of(left <= right ? 1 : 0);
+            case GTE -> OptionalInt.of(left >= right ? 1 : 0);
+            case EQ -> OptionalInt.of(left == right ? 1 : 0);
+            case NEQ -> OptionalInt.of(left != right ? 1 : 0);
+            case ANDB -> OptionalInt.of(left != 0 && right != 0 ? 1 : 0);
+            case ORB -> OptionalInt.of(left != 0 || right != 0 ? 1 : 0);
+            default -> NOT_CONSTANT;
+        };
+    }
+
+    private OptionalInt valueOf(Element element, Map<String, OptionalInt> state) {
+        if (element instanceof LiteralElement literal) {
+            var type = literal.getType().getTypeOfElement();
+            if (type != ElementType.INT32 && type != ElementType.BOOLEAN) {
+                return NOT_CONSTANT;
+            }
+
+            return OptionalInt.of(Integer.parseInt(literal.getLiteral()));
+        }
+
+        if (element instanceof ArrayOperand || !(element instanceof Operand operand)
+                || !variables.contains(operand.getName())) {
+            return NOT_CONSTANT;
+        }
+
+        return state.getOrDefault(operand.getName(), NOT_CONSTANT);
+    }
+
+    /**
+     * Replaces the constant operands of the instruction with literals.
+     *
+     * @return the instruction, or a new assignment of a literal if its value was folded
+     */
+    private Instruction rewrite(Instruction inst, Map<String, OptionalInt> state) {
+        switch (inst.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) inst;
+                var rhs = assign.getRhs();
+
+                var value = evaluate(rhs, state);
+                if (value.isPresent() && rhs.getInstType() != InstructionType.NOPER) {
+                    var literal = new LiteralElement(Integer.toString(value.getAsInt()), assign.getTypeOfAssign());
+                    return new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), new SingleOpInstruction(literal));
+                }
+
+                rewrite(rhs, state);
+            }
+            case CALL -> {
+                var arguments = ((CallInstruction) inst).getArguments();
+                for (int i = 0; i < arguments.size(); i++) {
+                    arguments.set(i, propagate(arguments.get(i), state));
+                }
+            }
+            case BINARYOPER -> {
+                var binary = (BinaryOpInstruction) inst;
+                binary.setLeftOperand(propagate(binary.getLeftOperand(), state));
+                binary.setRightOperand(propagate(binary.getRightOperand(), state));
+            }
+            case UNARYOPER -> {
+                var unary = (UnaryOpInstruction) inst;
+                unary.setOperand(propagate(unary.getOperand(), state));
+            }
+            case NOPER -> {
+                var single = (SingleOpInstruction) inst;
+                single.setSingleOperand(propagate(single.getSingleOperand(), state));
+            }
+            case RETURN -> {
+                var ret = (ReturnInstruction) inst;
+                if (ret.hasReturnValue()) {
+                    ret.setOperand(propagate(ret.getOperand(), state));
+                }
+            }
+            case BRANCH -> rewrite(((CondBranchInstruction) inst).getCondition(), state);
+            default -> {
+            }
+        }
+
+        return inst;
+    }
+
+    private Element propagate(Element element, Map<String, OptionalInt> state) {
+        if (element.isLiteral()) {
+            return element;
+        }
+
+        var value = valueOf(element, state);
+        if (value.isEmpty()) {
+            return element;
+        }
+
+        return new LiteralElement(Integer.toString(value.getAsInt()), element.getType());
+    }
+
+    private static void replace(Method method, int index, Instruction folded) {
+        var original = method.getInstructions().set(index, folded);
+
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == original) {
+                label.setValue(folded);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.*;
+
+/**
+ * Graph with an edge between every two variables that are alive at the same time, and so cannot share a register.
+ * <p>
+ * Some variables can be precolored, i.e. have a fixed register, like 'this' and the parameters of a method.
+ */
+class InterferenceGraph {
+
+    // Sorted, so that the same method is always colored the same way
+    private final Map<String, Set<String>> edges;
+    private final Map<String, Integer> precolored;
+
+    InterferenceGraph() {
+        edges = new TreeMap<>();
+        precolored = new HashMap<>();
+    }
+
+    /**
+     * Builds the graph of the given variables, adding an edge between each defined variable and the variables that
+     * are alive after the definition.
+     *
+     * @param liveness
+     * @param variables
+     * @param precolored the fixed registers of some of the variables
+     * @return
+     */
+    static InterferenceGraph build(Liveness liveness, Collection<String> variables, Map<String, Integer> precolored) {
+        var graph = new InterferenceGraph();
+        variables.forEach(graph::addNode);
+        precolored.forEach(graph::precolor);
+
+        for (var inst : liveness.getInstructions()) {
+            for (var def : liveness.getDefs(inst)) {
+                for (var live : liveness.getLiveOut(inst)) {
+                    graph.addEdge(def, live);
+                }
+            }
+        }
+
+        // The precolored variables are defined at the start of the method
+        var instructions = liveness.getInstructions();
+        if (!instructions.isEmpty()) {
+            for (var var : precolored.keySet()) {
+                for (var live : liveness.getLiveIn(instructions.get(0))) {
+                    graph.addEdge(var, live);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    void addNode(String var) {
+        edges.computeIfAbsent(var, key -> new TreeSet<>());
+    }
+
+    void addEdge(String var1, String var2) {
+        if (var1.equals(var2)) {
+            return;
+        }
+
+        addNode(var1);
+        addNode(var2);
+        edges.get(var1).add(var2);
+        edges.get(var2).add(var1);
+    }
+
+    void precolor(String var, int register) {
+        addNode(var);
+        precolored.put(var, register);
+    }
+
+    Set<String> getNodes() {
+        return edges.keySet();
+    }
+
+    Set<String> getNeighbours(String var) {
+        return edges.get(var);
+    }
+
+    /**
+     * @return the lowest number of registers that is worth trying, i.e. enough for the precolored variables
+     */
+    int getMinColors() {
+        var minColors = precolored.values().stream().mapToInt(register -> register + 1).max().orElse(0);
+        return edges.size() > precolored.size() ? Math.max(minColors, 1) : minColors;
+    }
+
+    /**
+     * Colors the graph with at most the given number of registers, by simplifying it (removing the variables with
+     * fewer neighbours than registers first) and then selecting the lowest free register for each variable in the
+     * reverse order.
+     *
+     * @param numRegisters
+     * @return the register of each variable, or empty if the graph could not be colored
+     */
+    Optional<Map<String, Integer>> color(int numRegisters) {
+        for (var register : precolored.values()) {
+            if (register >= numRegisters) {
+                return Optional.empty();
+            }
+        }
+
+        // Simplify
+        var remaining = new LinkedHashSet<String>();
+        for (var var : edges.keySet()) {
+            if (!precolored.containsKey(var)) {
+                remaining.add(var);
+            }
+        }
+
+        var stack = new ArrayDeque<String>();
+        while (!remaining.isEmpty()) {
+            String next = null;
+            var nextDegree = -1;
+            for (var var : remaining) {
+                var degree = degree(var, remaining);
+                if (degree < numRegisters) {
+                    next = var;
+                    break;
+                }
+
+                // No variable can be trivially colored, pick the one with more neighbours and hope for the best
+                if (degree > nextDegree) {
+                    next = var;
+                    nextDegree = degree;
+                }
+            }
+
+            remaining.remove(next);
+            stack.push(next);
+        }
+
+        // Select
+        var colors = new HashMap<>(precolored);
+        while (!stack.isEmpty()) {
+            var var = stack.pop();
+
+            var used = new BitSet(numRegisters);
+            for (var neighbour : edges.get(var)) {
+                var neighbourColor = colors.get(neighbour);
+                if (neighbourColor != null) {
+                    used.set(neighbourColor);
+                }
+            }
+
+            var color = used.nextClearBit(0);
+            if (color >= numRegisters) {
+                return Optional.empty();
+            }
+
+            colors.put(var, color);
+        }
+
+        return Optional.of(colors);
+    }
+
+    private int degree(String var, Set<String> remaining) {
+        var degree = 0;
+        for (var neighbour : edges.get(var)) {
+            if (remaining.contains(neighbour) || precolored.containsKey(neighbour)) {
+                degree++;
+            }
+        }
+
+        return degree;
+    }
+}
@@ -3,24 +3,31 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-
-import java.util.Collections;
+import pt.up.fe.comp2024.CompilerConfig;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var pool = CompilerConfig.getMethodPool(semanticsResult.getConfig()).orElse(null);
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        var ollirClass = new OllirBuilder(semanticsResult.getSymbolTable(), pool).build(semanticsResult.getRootNode());
+        return new LazyOllirResult(semanticsResult, ollirClass);
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        if (CompilerConfig.getOptimize(ollirResult.getConfig())) {
+            new ConstantPropagation().optimize(ollirResult.getOllirClass());
+        }
+
+        var registers = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
+        if (registers >= 0) {
+            var allocator = new RegisterAllocator(registers);
+            ollirResult.getReports().addAll(allocator.allocate(ollirResult.getOllirClass()));
+        }
 
         return ollirResult;
     }
@@ -0,0 +1,46 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.Collections;
+
+/**
+ * OLLIR result of a class built by {@link OllirBuilder}. The OLLIR code is only written, from the class, if it is
+ * asked for.
+ */
+public class LazyOllirResult extends OllirResult {
+
+    private final ClassUnit ollirClass;
+    private String ollirCode;
+
+    public LazyOllirResult(JmmSemanticsResult semanticsResult, ClassUnit ollirClass) {
+        // OllirResult can only be created from code, so it is given the code of an empty class
+        super(semanticsResult, ollirClass.getClassName() + " {}", Collections.emptyList());
+
+        this.ollirClass = ollirClass;
+        this.ollirCode = null;
+    }
+
+    @Override
+    public ClassUnit getOllirClass() {
+        return ollirClass;
+    }
+
+    /**
+     * @return if the OLLIR code was already written
+     */
+    public synchronized boolean hasOllirCode() {
+        return ollirCode != null;
+    }
+
+    @Override
+    public synchronized String getOllirCode() {
+        if (ollirCode == null) {
+            ollirCode = OllirPrinter.print(ollirClass);
+        }
+
+        return ollirCode;
+    }
+}
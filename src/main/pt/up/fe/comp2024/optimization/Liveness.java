@@ -0,0 +1,158 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Liveness analysis of the variables of an OLLIR method, over the control flow graph of its instructions.
+ * <p>
+ * Only the variables accepted by the given filter are tracked, e.g. locals and parameters, but not fields or the
+ * names of imported classes.
+ */
+class Liveness {
+
+    private final List<Instruction> instructions;
+    private final Map<Instruction, Set<String>> uses;
+    private final Map<Instruction, Set<String>> defs;
+    private final Map<Instruction, Set<String>> liveIn;
+    private final Map<Instruction, Set<String>> liveOut;
+
+    Liveness(Method method, Set<String> variables) {
+        instructions = method.getInstructions();
+        uses = new HashMap<>();
+        defs = new HashMap<>();
+        liveIn = new HashMap<>();
+        liveOut = new HashMap<>();
+
+        for (var inst : instructions) {
+            var instUses = new LinkedHashSet<String>();
+            var instDefs = new LinkedHashSet<String>();
+            collect(inst, instUses, instDefs);
+
+            instUses.retainAll(variables);
+            instDefs.retainAll(variables);
+
+            uses.put(inst, instUses);
+            defs.put(inst, instDefs);
+            liveIn.put(inst, new HashSet<>());
+            liveOut.put(inst, new HashSet<>());
+        }
+
+        solve(successors(method));
+    }
+
+    List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    Set<String> getDefs(Instruction inst) {
+        return defs.get(inst);
+    }
+
+    Set<String> getLiveIn(Instruction inst) {
+        return liveIn.get(inst);
+    }
+
+    Set<String> getLiveOut(Instruction inst) {
+        return liveOut.get(inst);
+    }
+
+    private Map<Instruction, List<Instruction>> successors(Method method) {
+        // Building the CFG twice adds every edge again
+        try {
+            method.getBeginNode();
+        } catch (RuntimeException e) {
+            method.buildCFG();
+        }
+
+        var successors = new HashMap<Instruction, List<Instruction>>();
+        for (var inst : instructions) {
+            var instSuccessors = new ArrayList<Instruction>();
+            for (var successor : inst.getSuccessors()) {
+                if (successor instanceof Instruction successorInst) {
+                    instSuccessors.add(successorInst);
+                }
+            }
+            successors.put(inst, instSuccessors);
+        }
+
+        return successors;
+    }
+
+    // in = use U (out - def), out = U in(successor), iterated backwards until nothing changes
+    private void solve(Map<Instruction, List<Instruction>> successors) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var inst = instructions.get(i);
+
+                var out = liveOut.get(inst);
+                for (var successor : successors.get(inst)) {
+                    changed |= out.addAll(liveIn.get(successor));
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(inst));
+                in.addAll(uses.get(inst));
+                changed |= liveIn.get(inst).addAll(in);
+            }
+        }
+    }
+
+    private static void collect(Instruction inst, Set<String> uses, Set<String> defs) {
+        switch (inst.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) inst;
+                var dest = assign.getDest();
+
+                // Storing in an array element reads the array reference
+                if (dest instanceof ArrayOperand) {
+                    addUses(dest, uses);
+                } else if (dest instanceof Operand operand) {
+                    defs.add(operand.getName());
+                }
+
+                collect(assign.getRhs(), uses, defs);
+            }
+            case CALL -> {
+                var call = (CallInstruction) inst;
+                addUses(call.getCaller(), uses);
+                call.getArguments().forEach(arg -> addUses(arg, uses));
+            }
+            case BINARYOPER -> {
+                var binary = (BinaryOpInstruction) inst;
+                addUses(binary.getLeftOperand(), uses);
+                addUses(binary.getRightOperand(), uses);
+            }
+            case UNARYOPER -> addUses(((UnaryOpInstruction) inst).getOperand(), uses);
+            case NOPER -> addUses(((SingleOpInstruction) inst).getSingleOperand(), uses);
+            case RETURN -> {
+                var ret = (ReturnInstruction) inst;
+                if (ret.hasReturnValue()) {
+                    addUses(ret.getOperand(), uses);
+                }
+            }
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) inst;
+                addUses(putField.getObject(), uses);
+                addUses(putField.getValue(), uses);
+            }
+            case GETFIELD -> addUses(((GetFieldInstruction) inst).getObject(), uses);
+            case BRANCH -> collect(((CondBranchInstruction) inst).getCondition(), uses, defs);
+            case GOTO -> {
+            }
+        }
+    }
+
+    private static void addUses(Element element, Set<String> uses) {
+        if (element instanceof ArrayOperand array) {
+            uses.add(array.getName());
+            array.getIndexOperands().forEach(index -> addUses(index, uses));
+        } else if (element instanceof Operand operand) {
+            uses.add(operand.getName());
+        }
+    }
+}
@@ -0,0 +1,746 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.comp2024.symboltable.MethodScope;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Builds the OLLIR class of the AST in memory, so that its code does not have to be printed and parsed again.
+ * <p>
+ * The class has the same methods, instructions, temporaries and labels as the result of parsing the code of
+ * {@link OllirGeneratorVisitor}, and its code is written by {@link OllirPrinter}. Unlike the visitor, it also builds
+ * arrays, and calls to methods that are not declared in the class.
+ */
+public class OllirBuilder extends AJmmVisitor<OllirBuilder.Code, OllirBuilder.Value> {
+
+    private final SymbolTable table;
+
+    // Where the methods are built concurrently, or null to build them in the calling thread
+    private final ForkJoinPool pool;
+
+    public OllirBuilder(SymbolTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool = pool;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(RETURN_STMT, this::visitReturn);
+        addVisit(ASSIGN_STMT, this::visitAssignStmt);
+        addVisit(EXPR_STMT, this::visitExpr);
+        addVisit(WHILE_STMT, this::visitWhileStmt);
+        addVisit(IF_STMT, this::visitIfStmt);
+        addVisit(CURLY_STMT, this::visitCurlyStmt);
+        addVisit(ASSIGN_ARRAY_STMT, this::visitAssignArrayStmt);
+
+        addVisit(VAR_REF_EXPR, this::visitVarRef);
+        addVisit(BINARY_EXPR, this::visitBinExpr);
+        addVisit(INTEGER_LITERAL, this::visitInteger);
+        addVisit(NEW_CLASS_EXPR, this::visitNewClass);
+        addVisit(FUNCTION_EXPR, this::visitFuncExpr);
+        addVisit(NEG_EXPR, this::visitNegExpr);
+        addVisit(BOOL_LITERAL, this::visitBoolLiteral);
+        addVisit(PAREN_EXPR, this::visitParenExpr);
+        addVisit(THIS_EXPR, this::visitThisExpr);
+        addVisit(ARRAY_ACCESS, this::visitArrayAccess);
+        addVisit(LENGTH_EXPR, this::visitLengthExpr);
+        addVisit(NEW_ARRAY_EXPR, this::visitNewArray);
+        addVisit(ARRAY_EXPR, this::visitArrayExpr);
+
+        setDefaultVisit((node, code) -> {
+            throw new NotImplementedException("OLLIR of " + node.getKind());
+        });
+    }
+
+    public ClassUnit build(JmmNode root) {
+        var classUnit = new ClassUnit();
+        classUnit.setClassAccessModifier(AccessModifier.DEFAULT);
+
+        for (var child : root.getChildren()) {
+            if (IMPORT_DECL.check(child)) {
+                classUnit.addImport(child.get("name").replaceAll("[\\[\\]]", "").replace(", ", "."));
+            } else if (CLASS_DECL.check(child)) {
+                buildClass(child, classUnit);
+            }
+        }
+
+        classUnit.buildVarTables();
+
+        return classUnit;
+    }
+
+    private void buildClass(JmmNode node, ClassUnit classUnit) {
+        classUnit.setClassName(table.getClassName());
+
+        if (node.hasAttribute("exName")) {
+            classUnit.setSuperClass(node.get("exName"));
+        }
+
+        var methods = new ArrayList<Supplier<Method>>();
+        for (var child : node.getChildren()) {
+            if (VAR_DECL.check(child)) {
+                var field = new Field();
+                field.setFieldAccessModifier(AccessModifier.PUBLIC);
+                field.setFieldName(child.get("name"));
+                field.setFieldType(toType(OptUtils.toOllirType(child.getJmmChild(0))));
+                classUnit.addField(field);
+            } else if (METHOD_DECL.check(child)) {
+                methods.add(() -> CompilationStats.current().measureMethod("ollir", child.get("name"),
+                        () -> OptUtils.withMethodScope(() -> buildMethod(child, classUnit))));
+            }
+        }
+
+        OptUtils.invokeAll(pool, methods).forEach(classUnit::addMethod);
+        classUnit.addMethod(buildConstructor(classUnit));
+    }
+
+    private Method buildMethod(JmmNode node, ClassUnit classUnit) {
+        var method = new Method(classUnit);
+        var name = node.get("name");
+        method.setMethodName(name);
+
+        boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
+        method.setMethodAccessModifier(isPublic ? AccessModifier.PUBLIC : AccessModifier.DEFAULT);
+
+        var count = 0;
+        if (name.equals("main")) {
+            method.setStaticMethod();
+            method.addParam(new Value("args", ".array.String", 0).toElement());
+        } else {
+            List<JmmNode> params = node.getChildren("Param");
+            for (int i = 0; i < params.size(); i++) {
+                var param = params.get(i);
+                method.addParam(new Value(param.get("name"), OptUtils.toOllirType(param.getJmmChild(0)), i + 1).toElement());
+                count++;
+            }
+
+            // e.g. 'int... a', which callers give as an array
+            if (!params.isEmpty() && params.get(params.size() - 1).getJmmChild(0).getKind().equals("VarArg")) {
+                method.setVarargs(true);
+            }
+        }
+
+        var retType = OptUtils.toOllirType(table.getReturnType(name));
+        method.setReturnType(toType(retType));
+
+        var code = new Code(method);
+        for (int i = count; i < node.getNumChildren(); i++) {
+            var child = node.getJmmChild(i);
+            if (!Kind.check(child, TYPE, PARAM, VAR_DECL)) {
+                visit(child, code);
+            }
+        }
+
+        if (retType.equals(".V")) {
+            var ret = new ReturnInstruction();
+            ret.setReturnType(toType(".V"));
+            code.add(ret);
+        }
+
+        code.checkNoPendingLabels();
+
+        return method;
+    }
+
+    private Method buildConstructor(ClassUnit classUnit) {
+        var constructor = new Method(classUnit);
+        constructor.setMethodName(table.getClassName());
+        constructor.setConstructMethod();
+        constructor.setMethodAccessModifier(AccessModifier.DEFAULT);
+        constructor.setReturnType(toType(".V"));
+        constructor.addInstr(invokeSpecial(thisOperand()));
+
+        return constructor;
+    }
+
+    private Value visitIfStmt(JmmNode jmmNode, Code code) {
+        JmmNode cond = jmmNode.getJmmChild(0);
+        JmmNode ifBody = jmmNode.getJmmChild(1);
+        JmmNode elseBody = jmmNode.getJmmChild(2);
+
+        int temp = OptUtils.getNextTempNum();
+        String ifStmt = "if_" + temp;
+        String endStmt = "end_" + temp;
+
+        var condValue = visit(cond, code);
+        code.branch(condValue, ifStmt);
+
+        for (var node : getStmts(elseBody)) {
+            visit(node, code);
+        }
+        code.add(new GotoInstruction(endStmt));
+        code.label(ifStmt);
+
+        for (var node : getStmts(ifBody)) {
+            visit(node, code);
+        }
+        code.label(endStmt);
+
+        return null;
+    }
+
+    private Value visitWhileStmt(JmmNode jmmNode, Code code) {
+        var head = jmmNode.getJmmChild(0);
+        var body = jmmNode.getJmmChild(1);
+
+        int temp = OptUtils.getNextTempNum();
+        String bodyWhile = "body_While" + temp;
+        String endWhile = "end_While" + temp;
+
+        var headValue = visit(head, code);
+        code.branch(headValue, bodyWhile);
+        code.add(new GotoInstruction(endWhile));
+        code.label(bodyWhile);
+
+        for (var node : getStmts(body)) {
+            visit(node, code);
+        }
+
+        // the condition is computed again, with the values given by the body
+        var loopValue = visit(head, code);
+        code.branch(loopValue, bodyWhile);
+        code.label(endWhile);
+
+        return null;
+    }
+
+    private static List<JmmNode> getStmts(JmmNode body) {
+        return CURLY_STMT.check(body) ? body.getChildren() : List.of(body);
+    }
+
+    private Value visitCurlyStmt(JmmNode node, Code code) {
+        for (var child : node.getChildren()) {
+            visit(child, code);
+        }
+
+        return null;
+    }
+
+    private Value visitExpr(JmmNode jmmNode, Code code) {
+        visit(jmmNode.getJmmChild(0), code);
+        return null;
+    }
+
+    private Value visitAssignStmt(JmmNode node, Code code) {
+        var lhs = visit(node.getJmmChild(0), code);
+        var rhs = visit(node.getJmmChild(1), code);
+
+        var type = OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
+        code.add(new AssignInstruction(lhs.toElement(), toType(type), new SingleOpInstruction(rhs.toElement())));
+
+        return null;
+    }
+
+    private Value visitAssignArrayStmt(JmmNode node, Code code) {
+        var array = visit(node.getJmmChild(0), code);
+        var index = visit(node.getJmmChild(1), code);
+        var value = visit(node.getJmmChild(2), code);
+
+        var elementType = array.getElementType();
+        code.add(new AssignInstruction(array.toArrayElement(index), toType(elementType),
+                new SingleOpInstruction(value.toElement())));
+
+        return null;
+    }
+
+    private Value visitReturn(JmmNode node, Code code) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        var retType = OptUtils.toOllirType(table.getReturnType(methodName));
+
+        if (node.getNumChildren() == 0) {
+            var ret = new ReturnInstruction();
+            ret.setReturnType(toType(".V"));
+            code.add(ret);
+            return null;
+        }
+
+        var value = visit(node.getJmmChild(0), code);
+        var ret = new ReturnInstruction(value.toElement());
+        ret.setReturnType(toType(retType));
+        code.add(ret);
+
+        return null;
+    }
+
+    private Value visitBoolLiteral(JmmNode jmmNode, Code code) {
+        return Value.literal(jmmNode.get("value").equals("true") ? "1" : "0", ".bool");
+    }
+
+    private Value visitInteger(JmmNode node, Code code) {
+        return Value.literal(node.get("value"), ".i32");
+    }
+
+    private Value visitNegExpr(JmmNode jmmNode, Code code) {
+        var operand = visit(jmmNode.getJmmChild(0), code);
+        var temp = new Value("t" + OptUtils.getNextTempNum(), ".bool");
+
+        var operation = new Operation(OperationType.NOTB, toType(".bool"));
+        code.add(new AssignInstruction(temp.toElement(), toType(".bool"),
+                new UnaryOpInstruction(operation, operand.toElement())));
+
+        return temp;
+    }
+
+    private Value visitFuncExpr(JmmNode jmmNode, Code code) {
+        var callerNode = jmmNode.getJmmChild(0);
+        String invokeName = jmmNode.get("value");
+        var temp = OptUtils.getTemp();
+
+        // Calls on a class that is imported, e.g. 'io.println(a)', are static
+        if (isImportedClass(callerNode)) {
+            var caller = new Operand(callerNode.get("name"), new ClassType(ElementType.CLASS, table.getClassName()));
+            var arguments = visitArguments(jmmNode, null, code);
+            var retType = getAssumedType(jmmNode);
+            var methodName = new LiteralElement("\"" + invokeName + "\"", new Type(ElementType.STRING));
+
+            if (retType.equals(".V")) {
+                code.add(new CallInstruction(CallType.invokestatic, caller, methodName, arguments, toType(retType), true));
+            } else {
+                var call = new CallInstruction(CallType.invokestatic, caller, methodName, arguments, toType(retType), false);
+                code.add(new AssignInstruction(new Value(temp, retType).toElement(), toType(retType), call));
+            }
+
+            return new Value(temp, retType);
+        }
+
+        Element caller;
+        String className;
+        if (THIS_EXPR.check(callerNode)) {
+            caller = thisOperand();
+            className = table.getClassName();
+        } else {
+            var object = visit(callerNode, code);
+            caller = object.toElement();
+            className = object.type.substring(1);
+        }
+
+        // Methods of other classes, e.g. imported or the super class, are not known
+        var declaration = className.equals(table.getClassName()) ? getMethodDecl(jmmNode, invokeName) : null;
+        var retType = declaration != null ?
+                OptUtils.toOllirType(table.getReturnType(invokeName)) :
+                getAssumedType(jmmNode);
+
+        // The arguments are computed before the call
+        var arguments = visitArguments(jmmNode, declaration, code);
+
+        var methodName = new LiteralElement("\"" + invokeName + "\"", new Type(ElementType.STRING));
+        var result = new Value(temp, retType);
+        var call = new CallInstruction(CallType.invokevirtual, caller, methodName, arguments, toType(retType), false);
+        code.add(new AssignInstruction(result.toElement(), toType(retType), call));
+
+        return result;
+    }
+
+    private boolean isImportedClass(JmmNode node) {
+        if (!VAR_REF_EXPR.check(node)) {
+            return false;
+        }
+
+        var typeName = TypeUtils.getVarExprType(node, table).getName();
+        return !typeName.equals(table.getClassName()) && !table.getImports().contains(typeName);
+    }
+
+    private static JmmNode getMethodDecl(JmmNode node, String name) {
+        var classDecl = node.getAncestor(CLASS_DECL).orElseThrow();
+        return classDecl.getChildren(METHOD_DECL).stream()
+                .filter(method -> method.get("name").equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Computes the arguments of a call. If the method is declared with 'int...', the arguments it takes as a list are
+     * put in a new array.
+     *
+     * @param declaration the declaration of the method, or null if it is not declared in the class
+     */
+    private List<Element> visitArguments(JmmNode call, JmmNode declaration, Code code) {
+        var values = new ArrayList<Value>();
+        for (int i = 1; i < call.getNumChildren(); i++) {
+            values.add(visit(call.getJmmChild(i), code));
+        }
+
+        var params = declaration == null ? List.<JmmNode>of() : declaration.getChildren(PARAM);
+        var isVarArgs = !params.isEmpty() && params.get(params.size() - 1).getJmmChild(0).getKind().equals("VarArg");
+
+        // An array given in place of the list is passed as it is
+        var varArgsIndex = params.size() - 1;
+        if (isVarArgs && !(values.size() == params.size() && values.get(varArgsIndex).type.equals(".array.i32"))) {
+            var listed = values.subList(varArgsIndex, values.size());
+            var array = newArray(Value.literal(Integer.toString(listed.size()), ".i32"), code);
+            for (int i = 0; i < listed.size(); i++) {
+                code.add(new AssignInstruction(array.toArrayElement(Value.literal(Integer.toString(i), ".i32")),
+                        toType(".i32"), new SingleOpInstruction(listed.get(i).toElement())));
+            }
+
+            listed.clear();
+            values.add(array);
+        }
+
+        return values.stream().map(Value::toElement).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * The return type of a method that is not declared in the class, e.g. of an imported class, is the type that the
+     * call is used as.
+     */
+    private String getAssumedType(JmmNode call) {
+        var parent = call.getParent();
+
+        if (PAREN_EXPR.check(parent)) {
+            return getAssumedType(parent);
+        }
+
+        if (EXPR_STMT.check(parent)) {
+            return ".V";
+        }
+
+        if (ASSIGN_STMT.check(parent)) {
+            return OptUtils.toOllirType(TypeUtils.getExprType(parent.getJmmChild(0), table));
+        }
+
+        if (RETURN_STMT.check(parent)) {
+            var methodName = parent.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+            return OptUtils.toOllirType(table.getReturnType(methodName));
+        }
+
+        if (Kind.check(parent, NEG_EXPR, IF_STMT, WHILE_STMT)
+                || (BINARY_EXPR.check(parent) && parent.get("op").equals("&&"))) {
+            return ".bool";
+        }
+
+        if (LENGTH_EXPR.check(parent) || (ARRAY_ACCESS.check(parent) && call.getIndexOfSelf() == 0)
+                || (ASSIGN_ARRAY_STMT.check(parent) && call.getIndexOfSelf() == 0)) {
+            return ".array.i32";
+        }
+
+        if (FUNCTION_EXPR.check(parent) && call.getIndexOfSelf() > 0) {
+            var declaration = getMethodDecl(parent, parent.get("value"));
+            var params = declaration == null ? List.<JmmNode>of() : declaration.getChildren(PARAM);
+            var index = call.getIndexOfSelf() - 1;
+
+            if (index < params.size()) {
+                var type = OptUtils.toOllirType(params.get(index).getJmmChild(0));
+                return params.get(index).getJmmChild(0).getKind().equals("VarArg") ? ".i32" : type;
+            }
+
+            // Elements of a list of arguments, or arguments of other unknown methods
+            return ".i32";
+        }
+
+        if (FUNCTION_EXPR.check(parent)) {
+            throw new RuntimeException("Could not find the class of the object of the call to '" + parent.get("value")
+                    + "', since it is the result of the unknown method '" + call.get("value") + "'");
+        }
+
+        // Operands of arithmetic and comparisons, indexes, sizes and elements of arrays
+        return ".i32";
+    }
+
+    private Value visitParenExpr(JmmNode node, Code code) {
+        return visit(node.getJmmChild(0), code);
+    }
+
+    private Value visitThisExpr(JmmNode node, Code code) {
+        // Outside of calls, 'this' is written as a variable of the class
+        return new Value("this", "." + table.getClassName());
+    }
+
+    private Value visitArrayAccess(JmmNode node, Code code) {
+        var array = visit(node.getJmmChild(0), code);
+        var index = visit(node.getJmmChild(1), code);
+
+        var elementType = array.getElementType();
+        var result = new Value(OptUtils.getTemp(), elementType);
+        code.add(new AssignInstruction(result.toElement(), toType(elementType),
+                new SingleOpInstruction(array.toArrayElement(index))));
+
+        return result;
+    }
+
+    private Value visitLengthExpr(JmmNode node, Code code) {
+        var array = visit(node.getJmmChild(0), code);
+
+        var result = new Value(OptUtils.getTemp(), ".i32");
+        code.add(new AssignInstruction(result.toElement(), toType(".i32"),
+                new CallInstruction(CallType.arraylength, array.toElement(), toType(".i32"))));
+
+        return result;
+    }
+
+    private Value visitNewArray(JmmNode node, Code code) {
+        return newArray(visit(node.getJmmChild(0), code), code);
+    }
+
+    private Value visitArrayExpr(JmmNode node, Code code) {
+        var elements = new ArrayList<Value>();
+        for (var child : node.getChildren()) {
+            elements.add(visit(child, code));
+        }
+
+        var array = newArray(Value.literal(Integer.toString(elements.size()), ".i32"), code);
+        for (int i = 0; i < elements.size(); i++) {
+            code.add(new AssignInstruction(array.toArrayElement(Value.literal(Integer.toString(i), ".i32")),
+                    toType(".i32"), new SingleOpInstruction(elements.get(i).toElement())));
+        }
+
+        return array;
+    }
+
+    private Value newArray(Value size, Code code) {
+        var array = new Value(OptUtils.getTemp(), ".array.i32");
+
+        // The caller of 'new' is 'array', e.g. new(array, 5.i32).array.i32
+        var caller = new Operand("array", new ArrayType());
+        var arguments = new ArrayList<Element>(List.of(size.toElement()));
+        code.add(new AssignInstruction(array.toElement(), toType(".array.i32"),
+                new CallInstruction(CallType.NEW, caller, arguments, toType(".array.i32"))));
+
+        return array;
+    }
+
+    private Value visitNewClass(JmmNode jmmNode, Code code) {
+        var type = OptUtils.toOllirType(jmmNode.get("className"));
+        var temp = new Value(OptUtils.getTemp(), type);
+
+        var caller = new Operand(jmmNode.get("className"), toType(type));
+        code.add(new AssignInstruction(temp.toElement(), toType(type),
+                new CallInstruction(CallType.NEW, caller, new ArrayList<>(), toType(type))));
+        code.add(invokeSpecial(temp.toElement()));
+
+        return temp;
+    }
+
+    private Value visitBinExpr(JmmNode node, Code code) {
+
+        if (node.get("op").equals("&&")) {
+            int temp = OptUtils.getNextTempNum();
+            var result = new Value(OptUtils.getTemp(), ".bool");
+
+            var lhs = visit(node.getJmmChild(0), code);
+            code.branch(lhs, "L_true" + temp);
+            code.add(new AssignInstruction(result.toElement(), toType(".bool"),
+                    new SingleOpInstruction(Value.literal("0", ".bool").toElement())));
+            code.add(new GotoInstruction("L_end" + temp));
+
+            // the right operand is only computed if the left one is true
+            code.label("L_true" + temp);
+            var rhs = visit(node.getJmmChild(1), code);
+            code.add(new AssignInstruction(result.toElement(), toType(".bool"), new SingleOpInstruction(rhs.toElement())));
+            code.label("L_end" + temp);
+
+            return result;
+        }
+
+        var lhs = visit(node.getJmmChild(0), code);
+        var rhs = visit(node.getJmmChild(1), code);
+
+        var type = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+        var result = new Value(OptUtils.getTemp(), type);
+
+        var operation = new Operation(toOperationType(node.get("op")), toType(type));
+        code.add(new AssignInstruction(result.toElement(), toType(type),
+                new BinaryOpInstruction(lhs.toElement(), operation, rhs.toElement())));
+
+        return result;
+    }
+
+    private Value visitVarRef(JmmNode node, Code code) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        var resolved = MethodScope.get(table, methodName).resolve(node.get("name"));
+        var id = node.get("name");
+        var type = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+
+        if (resolved.map(symbol -> symbol.is(ResolvedSymbol.Kind.LOCAL)).orElse(false)) {
+            return new Value(id, type);
+        }
+
+        if (resolved.map(symbol -> symbol.is(ResolvedSymbol.Kind.PARAMETER)).orElse(false)) {
+            return new Value(id, type, resolved.get().getIndex() + 1);
+        }
+
+        var temp = new Value(OptUtils.getTemp(), type);
+        var field = new Operand(id, toType(type));
+        code.add(new AssignInstruction(temp.toElement(), toType(type),
+                new GetFieldInstruction(thisOperand(), field, toType(type))));
+
+        return temp;
+    }
+
+    private Operand thisOperand() {
+        return new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+    }
+
+    private static CallInstruction invokeSpecial(Element object) {
+        var init = new LiteralElement("\"<init>\"", new Type(ElementType.STRING));
+        return new CallInstruction(CallType.invokespecial, object, init, new ArrayList<>(), new Type(ElementType.VOID), true);
+    }
+
+    private static OperationType toOperationType(String op) {
+        return switch (op) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "<=" -> OperationType.LTE;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "||" -> OperationType.ORB;
+            default -> throw new NotImplementedException("OLLIR of operator '" + op + "'");
+        };
+    }
+
+    /**
+     * @param ollirType the suffix of an OLLIR operand, e.g. '.i32' or '.array.String'
+     * @return a new type, since the parser does not share types between elements either
+     */
+    static Type toType(String ollirType) {
+        switch (ollirType) {
+            case ".i32":
+                return new Type(ElementType.INT32);
+            case ".bool":
+                return new Type(ElementType.BOOLEAN);
+            case ".V":
+                return new Type(ElementType.VOID);
+            case ".array.String": {
+                var type = new ArrayType(1, new int[]{0}, ElementType.STRING);
+                type.setElementClass("String");
+                return type;
+            }
+            case ".array.i32":
+                return new ArrayType(1, new int[]{0}, ElementType.INT32);
+            default:
+                break;
+        }
+
+        var className = ollirType.startsWith(".") ? ollirType.substring(1) : "";
+        if (className.isEmpty() || className.equals("String") || !className.chars().allMatch(Character::isJavaIdentifierPart)
+                || !Character.isJavaIdentifierStart(className.charAt(0))) {
+            throw new NotImplementedException("OLLIR type '" + ollirType + "'");
+        }
+
+        return new ClassType(ElementType.OBJECTREF, className);
+    }
+
+    /**
+     * Operand that holds the value of an expression, which creates a new element each time it is used, like the
+     * parser does for each occurrence of a name.
+     */
+    static class Value {
+
+        private final String name;
+        private final String type;
+        // Position of the parameter, or -1 if it is not a parameter
+        private final int paramId;
+        private final boolean literal;
+
+        private Value(String name, String type, int paramId, boolean literal) {
+            this.name = name;
+            this.type = type;
+            this.paramId = paramId;
+            this.literal = literal;
+        }
+
+        Value(String name, String type, int paramId) {
+            this(name, type, paramId, false);
+        }
+
+        Value(String name, String type) {
+            this(name, type, -1, false);
+        }
+
+        static Value literal(String value, String type) {
+            return new Value(value, type, -1, true);
+        }
+
+        /**
+         * @return the type of the elements of this array, e.g. '.i32' for '.array.i32'
+         */
+        String getElementType() {
+            return type.substring(".array".length());
+        }
+
+        /**
+         * @return the element of this array at the given index, e.g. a[i.i32].i32
+         */
+        Element toArrayElement(Value index) {
+            var element = new ArrayOperand(name, toType(getElementType()), new ArrayList<>(List.of(index.toElement())));
+            if (paramId >= 0) {
+                element.setParamId(paramId);
+            }
+
+            return element;
+        }
+
+        Element toElement() {
+            if (literal) {
+                return new LiteralElement(name, toType(type));
+            }
+
+            var operand = new Operand(name, toType(type));
+            if (paramId >= 0) {
+                operand.setParamId(paramId);
+            }
+
+            return operand;
+        }
+    }
+
+    /**
+     * Instructions of the method being built, with the labels that point to the next instruction.
+     */
+    static class Code {
+
+        private final Method method;
+        private final List<String> pendingLabels;
+
+        private Code(Method method) {
+            this.method = method;
+            this.pendingLabels = new ArrayList<>();
+        }
+
+        void add(Instruction instruction) {
+            method.addInstr(instruction);
+
+            for (var label : pendingLabels) {
+                method.addLabel(label, instruction);
+            }
+            pendingLabels.clear();
+        }
+
+        void label(String label) {
+            pendingLabels.add(label);
+        }
+
+        void branch(Value condition, String label) {
+            var branch = new SingleOpCondInstruction(new SingleOpInstruction(condition.toElement()));
+            branch.setLabel(label);
+            add(branch);
+        }
+
+        private void checkNoPendingLabels() {
+            if (!pendingLabels.isEmpty()) {
+                throw new NotImplementedException("OLLIR of labels at the end of method '" + method.getMethodName() + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only buffer where the OLLIR visitors write the generated code.
+ * <p>
+ * Text is written at the end of the last chunk. Appending another buffer only links its chunks, so the code of each
+ * method can be generated on its own and joined without copying it again. The text is copied once, by
+ * {@link #toString()}.
+ */
+public class OllirCode {
+
+    private final List<StringBuilder> chunks;
+    private StringBuilder last;
+
+    public OllirCode() {
+        chunks = new ArrayList<>();
+        last = null;
+    }
+
+    public OllirCode append(CharSequence text) {
+        if (last == null) {
+            last = new StringBuilder();
+            chunks.add(last);
+        }
+
+        last.append(text);
+        return this;
+    }
+
+    public OllirCode append(int value) {
+        return append(Integer.toString(value));
+    }
+
+    /**
+     * Links the chunks of the given code, which must not be appended to afterwards.
+     */
+    public OllirCode append(OllirCode code) {
+        chunks.addAll(code.chunks);
+        // The next text starts a new chunk, so the chunks of the other buffer are not changed
+        last = null;
+        return this;
+    }
+
+    public int length() {
+        return chunks.stream().mapToInt(StringBuilder::length).sum();
+    }
+
+    @Override
+    public String toString() {
+        var text = new StringBuilder(length());
+        chunks.forEach(text::append);
+        return text.toString();
+    }
+}
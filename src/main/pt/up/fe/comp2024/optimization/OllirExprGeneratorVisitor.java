@@ -4,10 +4,12 @@ import org.antlr.v4.runtime.misc.Pair;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.MethodScope;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 
 import java.util.List;
 import java.util.Spliterator;
@@ -16,8 +18,11 @@ import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
+ * <p>
+ * The instructions that compute an expression are written to the given {@link OllirCode}, and the result is the
+ * operand that holds its value.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends AJmmVisitor<OllirCode, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -43,7 +48,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         setDefaultVisit(this::defaultVisit);
     }
 
-    private OllirExprResult visitBoolLiteral(JmmNode jmmNode, Void unused) {
+    private OllirExprResult visitBoolLiteral(JmmNode jmmNode, OllirCode computation) {
         var type = new Type("boolean", false);
         String boolType = OptUtils.toOllirType(type);
         if (jmmNode.get("value").equals("true")) {
@@ -54,23 +59,24 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
     }
 
-    public OllirExprResult visitNegExpr(JmmNode jmmNode, Void unused) {
+    public OllirExprResult visitNegExpr(JmmNode jmmNode, OllirCode computation) {
+
+        var operand = visit(jmmNode.getJmmChild(0), computation);
 
-        StringBuilder computation = new StringBuilder();
         String temp = "t" + OptUtils.getNextTempNum() + ".bool";
         computation.append(temp);
         computation.append(ASSIGN);
         computation.append(".bool ");
         computation.append("!.bool ");
-        computation.append("1.bool");
+        computation.append(operand.getCode());
         computation.append(END_STMT);
 
-        return new OllirExprResult(temp, computation.toString());
+        return new OllirExprResult(temp);
     }
 
-    public OllirExprResult visitFuncExpr(JmmNode jmmNode, Void unused) {
-        StringBuilder computation = new StringBuilder();
+    public OllirExprResult visitFuncExpr(JmmNode jmmNode, OllirCode computation) {
         StringBuilder code = new StringBuilder();
+        StringBuilder invoke = new StringBuilder();
 
         var importName = jmmNode.getChild(0);
         String invokeName = jmmNode.get("value");
@@ -85,8 +91,8 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         var temp = OptUtils.getTemp();
 
         // Verifica se a classe do método é a mesma que a classe atual ou se é uma classe importada
-        if (varRef.equals("this") || TypeUtils.getVarExprType(importName,table).getName().equals(table.getClassName()) || table.getImports().contains(TypeUtils.getVarExprType(importName,table).getName())) {
-            computation.append(temp);
+        if (varRef.equals("this") || typeName.equals(table.getClassName()) || table.getImports().contains(typeName)) {
+            invoke.append(temp);
             var node = jmmNode;
             //Procura o método dentro da classe atual
             while (!node.getKind().equals("ClassDecl")) {
@@ -98,63 +104,62 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 //PROBLEMA: ele vai buscar o tipo do foo em vez do tipo do c
                 retType = OptUtils.toOllirType(first.getChild(0).get("name"));
             }
-            computation.append(retType);
-            computation.append(ASSIGN);
-            computation.append(retType);
-            computation.append(SPACE);
-            computation.append("invokevirtual").append("(");
+            invoke.append(retType);
+            invoke.append(ASSIGN);
+            invoke.append(retType);
+            invoke.append(SPACE);
+            invoke.append("invokevirtual").append("(");
         }
         else {
-            computation.append("invokestatic").append("(");
+            invoke.append("invokestatic").append("(");
             typeName = "";
             retType = ".V";
         }
 
         // Adiciona a referência do método e seu nome à computação
         if (varRef.equals("this")) {
-            computation.append("this");
+            invoke.append("this");
         }
         else {
-            computation.append(importName.get("name"));
+            invoke.append(importName.get("name"));
             if(!typeName.equals("")){
-                computation.append(".");
+                invoke.append(".");
             }
-            computation.append(typeName);
+            invoke.append(typeName);
         }
 
-        computation.append(", \"");
-        computation.append(invokeName);
+        invoke.append(", \"");
+        invoke.append(invokeName);
 
-        // Adiciona os argumentos do método
+        // Adiciona os argumentos do método, que são calculados antes da chamada
         for (int i = 1; i < jmmNode.getNumChildren(); i++) {
-            var nodeResult = visit(jmmNode.getJmmChild(i));
-            computation.append(nodeResult.getComputation());
+            var nodeResult = visit(jmmNode.getJmmChild(i), computation);
             code.append(nodeResult.getCode());
             if (i != jmmNode.getNumChildren() - 1) {
                 code.append(",");
             }
         }
-        computation.append("\"");
+        invoke.append("\"");
 
         if(jmmNode.getNumChildren()>1){
-            computation.append(",");
-            computation.append(SPACE);
+            invoke.append(",");
+            invoke.append(SPACE);
         }
-        computation.append(code);
+        invoke.append(code);
 
-        computation.append(")");
-        computation.append(retType);
-        computation.append(END_STMT);
+        invoke.append(")");
+        invoke.append(retType);
+        invoke.append(END_STMT);
+
+        computation.append(invoke);
 
         var finalee = temp + retType;
 
-        return new OllirExprResult(finalee, computation.toString());
+        return new OllirExprResult(finalee);
     }
 
 
-    private OllirExprResult visitNewClass(JmmNode jmmNode, Void unused) {
-        StringBuilder computation = new StringBuilder();
-
+    private OllirExprResult visitNewClass(JmmNode jmmNode, OllirCode computation) {
         var temp = OptUtils.getTemp();
 
         computation.append(temp);
@@ -180,11 +185,11 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         var finale = temp + OptUtils.toOllirType(jmmNode.get("className"));
 
-        return new OllirExprResult(finale , computation.toString());
+        return new OllirExprResult(finale);
     }
 
 
-    private OllirExprResult visitInteger(JmmNode node, Void unused) {
+    private OllirExprResult visitInteger(JmmNode node, OllirCode computation) {
         var intType = new Type(TypeUtils.getIntTypeName(), false);
         String ollirIntType = OptUtils.toOllirType(intType);
         String code = node.get("value") + ollirIntType;
@@ -192,12 +197,8 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
 
-    private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
+    private OllirExprResult visitBinExpr(JmmNode node, OllirCode computation) {
 
-        var lhs = visit(node.getJmmChild(0));
-        var rhs = visit(node.getJmmChild(1));
-
-        StringBuilder computation = new StringBuilder();
         String code;
 
         System.out.println(node.getJmmChild(0));
@@ -208,7 +209,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
             code = OptUtils.getTemp() + ".bool";
 
-            computation.append(lhs.getComputation());
+            var lhs = visit(node.getJmmChild(0), computation);
 
             computation.append("if").append("(").append(lhs.getCode()).append(")").append(" goto ").append("L_true").append(temp).append(";\n");
 
@@ -216,7 +217,9 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
             computation.append("goto ").append("L_end").append(temp).append(";\n");
 
-            computation.append("L_true").append(temp).append(":\n").append(rhs.getComputation());
+            // the right operand is only computed if the left one is true
+            computation.append("L_true").append(temp).append(":\n");
+            var rhs = visit(node.getJmmChild(1), computation);
 
             computation.append(code).append(SPACE).append(ASSIGN).append(".bool").append(SPACE).append(rhs.getCode()).append(END_STMT);
 
@@ -224,8 +227,8 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         } else {
             // code to compute the children
-            computation.append(lhs.getComputation());
-            computation.append(rhs.getComputation());
+            var lhs = visit(node.getJmmChild(0), computation);
+            var rhs = visit(node.getJmmChild(1), computation);
 
             // code to compute self
             Type resType = TypeUtils.getExprType(node, table);
@@ -241,24 +244,18 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                     .append(rhs.getCode()).append(END_STMT);
         }
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
 
-    private OllirExprResult visitVarRef(JmmNode node, Void unused) {
+    private OllirExprResult visitVarRef(JmmNode node, OllirCode computation) {
 
-        StringBuilder computation = new StringBuilder();
         StringBuilder code = new StringBuilder();
-        boolean param = false;
-        int pos = 0;
-        for(int i=0; i< table.getParameters(node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow()).size();i++){
-            if (table.getParameters(node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow()).get(i).getName().equals(node.get("name"))) {
-                param = true;
-                pos = i + 1;
-                break;
-            }
-        }
-        if(table.getLocalVariables(node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow()).stream().anyMatch(symbol -> symbol.getName().equals(node.get("name")))) {
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        var resolved = MethodScope.get(table, methodName).resolve(node.get("name"));
+        boolean param = resolved.map(symbol -> symbol.is(ResolvedSymbol.Kind.PARAMETER)).orElse(false);
+        int pos = resolved.map(symbol -> symbol.getIndex() + 1).orElse(0);
+        if(resolved.map(symbol -> symbol.is(ResolvedSymbol.Kind.LOCAL)).orElse(false)) {
             var id = node.get("name");
             Type type = TypeUtils.getExprType(node, table);
             String ollirType = OptUtils.toOllirType(type);
@@ -281,20 +278,20 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             computation.append("getfield(this.").append(table.getClassName()).append(",");
             computation.append(node.get("name")).append(ollirType).append(")").append(ollirType).append(END_STMT);
         }
-        return new OllirExprResult(code.toString() ,computation.toString());
+        return new OllirExprResult(code.toString());
     }
 
     /**
      * Default visitor. Visits every child node and return an empty result.
      *
      * @param node
-     * @param unused
+     * @param computation
      * @return
      */
-    private OllirExprResult defaultVisit(JmmNode node, Void unused) {
+    private OllirExprResult defaultVisit(JmmNode node, OllirCode computation) {
 
         for (var child : node.getChildren()) {
-            visit(child);
+            visit(child, computation);
         }
 
         return OllirExprResult.EMPTY;
@@ -1,27 +1,18 @@
 package pt.up.fe.comp2024.optimization;
 
+/**
+ * Operand that holds the value of an expression, e.g. 'a.i32', '1.bool' or 'tmp0.i32'.
+ * <p>
+ * The instructions that compute the value are written to the {@link OllirCode} given to the visitor.
+ */
 public class OllirExprResult {
 
-    public static final OllirExprResult EMPTY = new OllirExprResult("", "");
+    public static final OllirExprResult EMPTY = new OllirExprResult("");
 
-    private final String computation;
     private final String code;
 
-    public OllirExprResult(String code, String computation) {
-        this.code = code;
-        this.computation = computation;
-    }
-
     public OllirExprResult(String code) {
-        this(code, "");
-    }
-
-    public OllirExprResult(String code, StringBuilder computation) {
-        this(code, computation.toString());
-    }
-
-    public String getComputation() {
-        return computation;
+        this.code = code;
     }
 
     public String getCode() {
@@ -31,8 +22,7 @@ public class OllirExprResult {
     @Override
     public String toString() {
         return "OllirNodeResult{" +
-                "computation='" + computation + '\'' +
-                ", code='" + code + '\'' +
+                "code='" + code + '\'' +
                 '}';
     }
 }
@@ -8,16 +8,20 @@ import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.stats.CompilationStats;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
- * Generates OLLIR code from JmmNodes that are not expressions.
+ * Generates OLLIR code from JmmNodes that are not expressions, writing it to the given {@link OllirCode}.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
+public class OllirGeneratorVisitor extends AJmmVisitor<OllirCode, Void> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -31,8 +35,16 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    // Where the methods are generated concurrently, or null to generate them in the calling thread
+    private final ForkJoinPool pool;
+
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, null);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table, ForkJoinPool pool) {
         this.table = table;
+        this.pool = pool;
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
@@ -55,9 +67,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         setDefaultVisit(this::defaultVisit);
     }
 
-    private String visitIfStmt(JmmNode jmmNode, Void unused) {
-
-        StringBuilder code = new StringBuilder();
+    private Void visitIfStmt(JmmNode jmmNode, OllirCode code) {
 
         JmmNode cond = jmmNode.getJmmChild(0);
         JmmNode ifBody = jmmNode.getJmmChild(1);
@@ -67,26 +77,24 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         String ifStmt = "if_" + temp;
         String endStmt = "end_" + temp;
 
-        code.append(exprVisitor.visit(cond).getComputation());
-        code.append("if").append("(").append(exprVisitor.visit(cond).getCode()).append(")").append(" goto ").append(ifStmt).append(END_STMT);
+        var condExpr = exprVisitor.visit(cond, code);
+        code.append("if").append("(").append(condExpr.getCode()).append(")").append(" goto ").append(ifStmt).append(END_STMT);
 
-        for(var node: ifBody.getChildren()){
-            code.append(visit(node));
+        for(var node: getStmts(elseBody)){
+            visit(node, code);
         }
         code.append("goto ").append(endStmt).append(END_STMT);
         code.append(ifStmt).append(":\n");
 
-        for(var node: ifBody.getChildren()){
-            code.append(visit(node));
+        for(var node: getStmts(ifBody)){
+            visit(node, code);
         }
         code.append(endStmt).append(":\n");
 
-        return code.toString();
+        return null;
     }
 
-    private String visitWhileStmt(JmmNode jmmNode, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitWhileStmt(JmmNode jmmNode, OllirCode code) {
         var head = jmmNode.getJmmChild(0);
         var body = jmmNode.getJmmChild(1);
 
@@ -94,30 +102,34 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         String bodyWhile = "body_While" + temp;
         String endWhile = "end_While" + temp;
 
-        code.append(exprVisitor.visit(head).getComputation());
+        var headExpr = exprVisitor.visit(head, code);
 
-        code.append("if").append("(").append(exprVisitor.visit(head).getCode()).append(")").append("goto ").append(bodyWhile).append(END_STMT);
+        code.append("if").append("(").append(headExpr.getCode()).append(")").append("goto ").append(bodyWhile).append(END_STMT);
         code.append("goto").append(SPACE).append(endWhile).append(END_STMT);
         code.append(bodyWhile).append(":\n");
 
-        for(var node: body.getChildren()){
-            code.append(visit(node));
+        for(var node: getStmts(body)){
+            visit(node, code);
         }
 
-        code.append("if").append("(").append(exprVisitor.visit(head).getCode()).append(")").append("goto ").append(bodyWhile).append(END_STMT);
+        // the condition is computed again, with the values given by the body
+        var loopExpr = exprVisitor.visit(head, code);
+        code.append("if").append("(").append(loopExpr.getCode()).append(")").append("goto ").append(bodyWhile).append(END_STMT);
         code.append(endWhile).append(":\n");
 
-        return code.toString();
+        return null;
     }
 
-    private String visitExpr(JmmNode jmmNode, Void unused) {
-        OllirExprResult expr = exprVisitor.visit(jmmNode.getJmmChild(0));
-        return expr.getComputation();
+    private static List<JmmNode> getStmts(JmmNode body) {
+        return body.getKind().equals("CurlyStmt") ? body.getChildren() : List.of(body);
     }
 
-    private String visitImport(JmmNode jmmNode, Void unused) {
+    private Void visitExpr(JmmNode jmmNode, OllirCode code) {
+        exprVisitor.visit(jmmNode.getJmmChild(0), code);
+        return null;
+    }
 
-        StringBuilder code = new StringBuilder();
+    private Void visitImport(JmmNode jmmNode, OllirCode code) {
 
         code.append("import ");
 
@@ -126,12 +138,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(END_STMT);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitVar(JmmNode jmmNode, Void unused) {
-
-        StringBuilder code = new StringBuilder();
+    private Void visitVar(JmmNode jmmNode, OllirCode code) {
 
         if(jmmNode.getParent().getKind().equals(CLASS_DECL.toString())){
             code.append(".field public ");
@@ -140,19 +150,14 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(OptUtils.toOllirType(jmmNode.getJmmChild(0)));
         code.append(END_STMT);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitAssignStmt(JmmNode node, Void unused) {
-
-        var lhs = exprVisitor.visit(node.getJmmChild(0));
-        var rhs = exprVisitor.visit(node.getJmmChild(1));
-
-        StringBuilder code = new StringBuilder();
+    private Void visitAssignStmt(JmmNode node, OllirCode code) {
 
         // code to compute the children
-        code.append(lhs.getComputation());
-        code.append(rhs.getComputation());
+        var lhs = exprVisitor.visit(node.getJmmChild(0), code);
+        var rhs = exprVisitor.visit(node.getJmmChild(1), code);
 
         // code to compute self
         // statement has type of lhs
@@ -173,24 +178,21 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(END_STMT);
 
-        return code.toString();
+        return null;
     }
 
 
-    private String visitReturn(JmmNode node, Void unused) {
+    private Void visitReturn(JmmNode node, OllirCode code) {
 
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
         Type retType = table.getReturnType(methodName);
 
-        StringBuilder code = new StringBuilder();
-
         var expr = OllirExprResult.EMPTY;
 
         if (node.getNumChildren() > 0) {
-            expr = exprVisitor.visit(node.getJmmChild(0));
+            expr = exprVisitor.visit(node.getJmmChild(0), code);
         }
 
-        code.append(expr.getComputation());
         code.append("ret");
         code.append(OptUtils.toOllirType(retType));
         code.append(SPACE);
@@ -199,24 +201,29 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(END_STMT);
 
-        return code.toString();
+        return null;
     }
 
 
-    private String visitParam(JmmNode node, Void unused) {
+    private Void visitParam(JmmNode node, OllirCode code) {
 
         var typeCode = OptUtils.toOllirType(node.getJmmChild(0));
         var id = node.get("name");
 
-        String code = id + typeCode;
+        code.append(id).append(typeCode);
 
-        return code;
+        return null;
     }
 
 
-    private String visitMethodDecl(JmmNode node, Void unused) {
+    private Void visitMethodDecl(JmmNode node, OllirCode code) {
+        return CompilationStats.current().measureMethod("ollir", node.get("name"),
+                () -> OptUtils.withMethodScope(() -> generateMethodDecl(node, code)));
+    }
+
+    private Void generateMethodDecl(JmmNode node, OllirCode code) {
 
-        StringBuilder code = new StringBuilder(".method ");
+        code.append(".method ");
 
         boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
 
@@ -238,7 +245,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append("(");
         for(int i =0; i < param.size(); i++){
             JmmNode p = param.get(i);
-            code.append(visitParam(p, null));
+            visitParam(p, code);
             count++;
             if (i < param.size()-1){
                 code.append(", ");
@@ -256,9 +263,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         var numberArgument = node.getNumChildren();
         for (int i = count; i < numberArgument; i++) {
             var child = node.getJmmChild(i);
-            if ((child.getKind().equals("ReturnStmt")) || (child.getKind().equals("AssignStmt")) || (child.getKind().equals("ExprStmt"))) {
-                var childCode = visit(child);
-                code.append(childCode);
+            if ((child.getKind().equals("ReturnStmt")) || (child.getKind().equals("AssignStmt")) || (child.getKind().equals("ExprStmt"))
+                    || WHILE_STMT.check(child) || IF_STMT.check(child)) {
+                visit(child, code);
             }
         }
 
@@ -271,12 +278,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(R_BRACKET);
         code.append(NL);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitClass(JmmNode node, Void unused) {
-
-        StringBuilder code = new StringBuilder();
+    private Void visitClass(JmmNode node, OllirCode code) {
 
         code.append(table.getClassName());
 
@@ -290,8 +295,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(NL);
         var needNl = true;
 
-        for (var child : node.getChildren()) {
-            var result = visit(child);
+        var children = node.getChildren();
+        var results = visitChildren(children);
+        for (int i = 0; i < children.size(); i++) {
+            var child = children.get(i);
+            var result = results.get(i);
 
             if (METHOD_DECL.check(child) && needNl) {
                 code.append(NL);
@@ -304,7 +312,24 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(buildConstructor());
         code.append(R_BRACKET);
 
-        return code.toString();
+        return null;
+    }
+
+    /**
+     * Visits the children of the class, each into its own code. Methods are generated concurrently if there is a pool,
+     * and their code is returned in declaration order.
+     */
+    private List<OllirCode> visitChildren(List<JmmNode> children) {
+        var tasks = new ArrayList<Supplier<OllirCode>>();
+        for (var child : children) {
+            tasks.add(() -> {
+                var childCode = new OllirCode();
+                visit(child, childCode);
+                return childCode;
+            });
+        }
+
+        return OptUtils.invokeAll(pool, tasks);
     }
 
     private String buildConstructor() {
@@ -315,30 +340,28 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
-    private String visitProgram(JmmNode node, Void unused) {
-
-        StringBuilder code = new StringBuilder();
+    private Void visitProgram(JmmNode node, OllirCode code) {
 
-        node.getChildren().stream()
-                .map(this::visit)
-                .forEach(code::append);
+        for (var child : node.getChildren()) {
+            visit(child, code);
+        }
 
-        return code.toString();
+        return null;
     }
 
     /**
-     * Default visitor. Visits every child node and return an empty string.
+     * Default visitor. Visits every child node, discarding their code.
      *
      * @param node
-     * @param unused
+     * @param code
      * @return
      */
-    private String defaultVisit(JmmNode node, Void unused) {
+    private Void defaultVisit(JmmNode node, OllirCode code) {
 
         for (var child : node.getChildren()) {
-            visit(child);
+            visit(child, new OllirCode());
         }
 
-        return "";
+        return null;
     }
 }
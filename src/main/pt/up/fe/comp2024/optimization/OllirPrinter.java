@@ -0,0 +1,208 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.stream.Collectors;
+
+/**
+ * Writes the OLLIR code of a class, so that the code of a class built by {@link OllirBuilder} is the code of the
+ * class itself, including the changes of the optimizations. Parsing the code gives back the same class.
+ */
+public class OllirPrinter {
+
+    private final OllirCode code;
+
+    private OllirPrinter() {
+        this.code = new OllirCode();
+    }
+
+    public static String print(ClassUnit classUnit) {
+        var printer = new OllirPrinter();
+        printer.printClass(classUnit);
+        return printer.code.toString();
+    }
+
+    private void printClass(ClassUnit classUnit) {
+        for (var importName : classUnit.getImports()) {
+            code.append("import ").append(importName).append(";\n");
+        }
+
+        code.append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) {
+            code.append(" extends ").append(classUnit.getSuperClass());
+        }
+        code.append(" {\n\n");
+
+        for (var field : classUnit.getFields()) {
+            code.append(".field ").append(getModifier(field.getFieldAccessModifier()))
+                    .append(field.getFieldName()).append(toOllirType(field.getFieldType())).append(";\n");
+        }
+
+        for (var method : classUnit.getMethods()) {
+            code.append("\n");
+            printMethod(method);
+        }
+
+        code.append("}\n");
+    }
+
+    private void printMethod(Method method) {
+        if (method.isConstructMethod()) {
+            code.append(".construct ");
+        } else {
+            code.append(".method ").append(getModifier(method.getMethodAccessModifier()));
+            if (method.isStaticMethod()) {
+                code.append("static ");
+            }
+            if (method.isVarargs()) {
+                code.append("varargs ");
+            }
+        }
+
+        var params = method.getParams().stream()
+                .map(param -> ((Operand) param).getName() + toOllirType(param.getType()))
+                .collect(Collectors.joining(", "));
+        code.append(method.getMethodName()).append("(").append(params).append(")")
+                .append(toOllirType(method.getReturnType())).append(" {\n");
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : method.getLabels(instruction)) {
+                code.append(label).append(":\n");
+            }
+
+            printInstruction(instruction);
+            code.append(";\n");
+        }
+
+        code.append("}\n");
+    }
+
+    private void printInstruction(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) instruction;
+                var type = toOllirType(assign.getTypeOfAssign());
+                code.append(toOllir(assign.getDest())).append(" :=").append(type).append(" ");
+                printInstruction(assign.getRhs());
+            }
+            case CALL -> printCall((CallInstruction) instruction);
+            case GOTO -> code.append("goto ").append(((GotoInstruction) instruction).getLabel());
+            case BRANCH -> {
+                var branch = (CondBranchInstruction) instruction;
+                code.append("if (");
+                printInstruction(branch.getCondition());
+                code.append(") goto ").append(branch.getLabel());
+            }
+            case RETURN -> {
+                var ret = (ReturnInstruction) instruction;
+                code.append("ret").append(toOllirType(ret.getReturnType()));
+                if (ret.hasReturnValue()) {
+                    code.append(" ").append(toOllir(ret.getOperand()));
+                }
+            }
+            case GETFIELD -> {
+                var getField = (GetFieldInstruction) instruction;
+                code.append("getfield(").append(toOllir(getField.getObject())).append(", ")
+                        .append(toOllir(getField.getField())).append(")").append(toOllirType(getField.getFieldType()));
+            }
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) instruction;
+                code.append("putfield(").append(toOllir(putField.getObject())).append(", ")
+                        .append(toOllir(putField.getField())).append(", ").append(toOllir(putField.getValue()))
+                        .append(").V");
+            }
+            case UNARYOPER -> {
+                var unary = (UnaryOpInstruction) instruction;
+                code.append(toOllir(unary.getOperation())).append(" ").append(toOllir(unary.getOperand()));
+            }
+            case BINARYOPER -> {
+                var binary = (BinaryOpInstruction) instruction;
+                code.append(toOllir(binary.getLeftOperand())).append(" ").append(toOllir(binary.getOperation()))
+                        .append(" ").append(toOllir(binary.getRightOperand()));
+            }
+            case NOPER -> code.append(toOllir(((SingleOpInstruction) instruction).getSingleOperand()));
+            default -> throw new NotImplementedException("OLLIR code of instruction " + instruction.getInstType());
+        }
+    }
+
+    private void printCall(CallInstruction call) {
+        var operands = call.getArguments().stream().map(this::toOllir).toList();
+
+        if (call.getInvocationType() == CallType.NEW) {
+            // e.g. new(A).A, where the caller is the class, or new(array, 5.i32).array.i32
+            code.append("new(").append(((Operand) call.getCaller()).getName());
+            operands.forEach(operand -> code.append(", ").append(operand));
+        } else if (call.getInvocationType() == CallType.arraylength) {
+            code.append("arraylength(").append(toOllir(call.getCaller()));
+        } else {
+            code.append(call.getInvocationType().name()).append("(").append(toOllir(call.getCaller()))
+                    .append(", ").append(((LiteralElement) call.getMethodName()).getLiteral());
+            operands.forEach(operand -> code.append(", ").append(operand));
+        }
+
+        code.append(")").append(toOllirType(call.getReturnType()));
+    }
+
+    private String toOllir(Operation operation) {
+        var symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case LTH -> "<";
+            case GTH -> ">";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            default -> throw new NotImplementedException("OLLIR code of operation " + operation.getOpType());
+        };
+
+        return symbol + toOllirType(operation.getTypeInfo());
+    }
+
+    private String toOllir(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + toOllirType(literal.getType());
+        }
+
+        var operand = (Operand) element;
+        var type = operand.getType().getTypeOfElement();
+
+        // 'this' and the classes of static calls are written without a type
+        if (type == ElementType.THIS || type == ElementType.CLASS) {
+            return operand.getName();
+        }
+
+        var name = operand.isParameter() ? "$" + operand.getParamId() + "." + operand.getName() : operand.getName();
+
+        // e.g. a[i.i32].i32, which has the type of the element
+        if (operand instanceof ArrayOperand arrayOperand) {
+            var indexes = arrayOperand.getIndexOperands().stream()
+                    .map(index -> "[" + toOllir(index) + "]")
+                    .collect(Collectors.joining());
+            return name + indexes + toOllirType(operand.getType());
+        }
+
+        return name + toOllirType(operand.getType());
+    }
+
+    private static String toOllirType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> ".i32";
+            case BOOLEAN -> ".bool";
+            case VOID -> ".V";
+            case STRING -> ".String";
+            case ARRAYREF -> ".array" + toOllirType(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS, THIS -> "." + ((ClassType) type).getName();
+        };
+    }
+
+    private static String getModifier(AccessModifier modifier) {
+        return modifier == AccessModifier.DEFAULT ? "" : modifier.name().toLowerCase() + " ";
+    }
+}
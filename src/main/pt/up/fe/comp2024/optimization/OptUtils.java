@@ -3,10 +3,64 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
+import pt.up.fe.comp2024.stats.CompilationStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
 public class OptUtils {
-    private static int tempNumber = -1;
+    // Numbering of the temporaries and labels of the method being generated in the current thread
+    private static final ThreadLocal<int[]> tempNumber = ThreadLocal.withInitial(() -> new int[]{-1});
+
+    /**
+     * Generates the code of a method, numbering its temporaries and labels from 0, so that the names do not depend
+     * on the methods or files generated before, or on the thread that generates it.
+     */
+    public static <T> T withMethodScope(Supplier<T> generator) {
+        var previous = tempNumber.get();
+        tempNumber.set(new int[]{-1});
+
+        try {
+            return generator.get();
+        } finally {
+            tempNumber.set(previous);
+        }
+    }
+
+    /**
+     * Runs the tasks concurrently in the pool, or one after the other in the calling thread if there is no pool. The
+     * tasks see the stats of the calling thread.
+     *
+     * @return the results of the tasks, in the order of the tasks
+     */
+    public static <T> List<T> invokeAll(ForkJoinPool pool, List<Supplier<T>> tasks) {
+        var stats = CompilationStats.current();
+
+        var forkJoinTasks = new ArrayList<ForkJoinTask<T>>();
+        for (var task : tasks) {
+            forkJoinTasks.add(ForkJoinTask.adapt(() -> stats.collect(task)));
+        }
+
+        if (pool != null && forkJoinTasks.size() > 1) {
+            if (ForkJoinTask.getPool() == pool) {
+                ForkJoinTask.invokeAll(forkJoinTasks);
+            } else {
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(forkJoinTasks)));
+            }
+        }
+
+        var results = new ArrayList<T>();
+        for (var task : forkJoinTasks) {
+            results.add(task.isDone() ? task.join() : task.invoke());
+        }
+
+        return results;
+    }
 
     public static String getTemp() {
 
@@ -20,21 +74,34 @@ public class OptUtils {
 
     public static int getNextTempNum() {
 
-        tempNumber += 1;
-        return tempNumber;
+        return ++tempNumber.get()[0];
     }
 
     public static String toOllirType(JmmNode typeNode) {
 
         TYPE.checkOrThrow(typeNode);
 
+        // The element type of 'int[]' is its child, the one of 'int...' is its name
+        if (typeNode.getKind().equals("Array")) {
+            return ".array" + toOllirType(typeNode.getJmmChild(0));
+        }
+
+        if (typeNode.getKind().equals("VarArg")) {
+            return ".array" + toOllirType(typeNode.get("name"));
+        }
+
         String typeName = typeNode.get("name");
 
         return toOllirType(typeName);
     }
 
     public static String toOllirType(Type type) {
-        return toOllirType(type.getName());
+        // The symbol table gives parameters declared with 'int...' the type 'VarArg'
+        if (type.getName().equals("VarArg")) {
+            return ".array.i32";
+        }
+
+        return (type.isArray() ? ".array" : "") + toOllirType(type.getName());
     }
 
     public static String toOllirType(String typeName) {
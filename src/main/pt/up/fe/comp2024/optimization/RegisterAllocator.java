@@ -0,0 +1,96 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Assigns the local variables of each method to JVM registers by coloring the interference graph given by a
+ * liveness analysis, so that variables that are never alive at the same time share a register.
+ * <p>
+ * 'this' and the parameters keep their registers, since the JVM passes them there.
+ */
+public class RegisterAllocator {
+
+    private final int maxRegisters;
+
+    /**
+     * @param maxRegisters the maximum number of registers of each method, or 0 to use as few as possible
+     */
+    public RegisterAllocator(int maxRegisters) {
+        if (maxRegisters < 0) {
+            throw new RuntimeException("Expected a non-negative number of registers, got " + maxRegisters);
+        }
+
+        this.maxRegisters = maxRegisters;
+    }
+
+    /**
+     * Allocates the registers of every method of the class, updating the descriptors in their var tables.
+     *
+     * @param classUnit
+     * @return an error for each method that needs more than the maximum number of registers
+     */
+    public List<Report> allocate(ClassUnit classUnit) {
+        var reports = new ArrayList<Report>();
+
+        for (var method : classUnit.getMethods()) {
+            allocate(method).ifPresent(reports::add);
+        }
+
+        return reports;
+    }
+
+    private Optional<Report> allocate(Method method) {
+        var varTable = method.getVarTable();
+
+        var variables = new TreeSet<String>();
+        var precolored = new HashMap<String, Integer>();
+        for (var entry : varTable.entrySet()) {
+            var descriptor = entry.getValue();
+
+            // Class names used in static calls and 'new' are not loaded from a register
+            if (descriptor.getVarType() != null && descriptor.getVarType().getTypeOfElement() == ElementType.CLASS) {
+                descriptor.setVirtualReg(-1);
+                continue;
+            }
+
+            if (descriptor.getScope() == VarScope.PARAMETER || entry.getKey().equals("this")) {
+                precolored.put(entry.getKey(), descriptor.getVirtualReg());
+            }
+
+            if (descriptor.getScope() != VarScope.FIELD) {
+                variables.add(entry.getKey());
+            }
+        }
+
+        var graph = InterferenceGraph.build(new Liveness(method, variables), variables, precolored);
+
+        // 'this' is loaded with aload_0, its register is never reused
+        if (precolored.containsKey("this")) {
+            variables.forEach(var -> graph.addEdge("this", var));
+        }
+
+        var minRegisters = graph.getMinColors();
+        Map<String, Integer> registers = null;
+        for (int numRegisters = minRegisters; registers == null; numRegisters++) {
+            registers = graph.color(numRegisters).orElse(null);
+            minRegisters = numRegisters;
+        }
+
+        if (maxRegisters > 0 && minRegisters > maxRegisters) {
+            return Optional.of(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                    "Method '" + method.getMethodName() + "' needs at least " + minRegisters + " registers, but only "
+                            + maxRegisters + " were requested with -r", null));
+        }
+
+        registers.forEach((var, register) -> varTable.get(var).setVirtualReg(register));
+
+        return Optional.empty();
+    }
+}
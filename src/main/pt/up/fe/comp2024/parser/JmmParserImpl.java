@@ -1,15 +1,51 @@
 package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
+import pt.up.fe.comp.jmm.ast.antlr.JmmNodeCleanup;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.AstSnapshot;
+import pt.up.fe.comp2024.ast.CompactAst;
+import pt.up.fe.comp2024.cache.CompilationCache;
+import pt.up.fe.comp2024.stats.CompilationStats;
 
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Copyright 2022 SPeCS.
@@ -26,6 +62,15 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    // The lexer and parser of each thread are reused for every file it parses
+    private static final ThreadLocal<ReusableParser> PARSERS = ThreadLocal.withInitial(ReusableParser::new);
+
+    // Tokens of mapped files copy their text, since the nodes may read it after the file changed
+    private static final CommonTokenFactory COPYING_TOKEN_FACTORY = new CommonTokenFactory(true);
+
+    // The DFA of the ANTLR simulators is shared by all parsers, so it is only cleared when no file is being parsed
+    private static final ReadWriteLock DFA_LOCK = new ReentrantReadWriteLock();
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,24 +78,253 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        return parse(cache -> cache.getAstKey(jmmCode), () -> new ANTLRInputStream(jmmCode), startingRule, config);
+    }
+
+    /**
+     * Parses the given file, which the lexer reads from memory-mapped bytes instead of a copy of its code.
+     */
+    public JmmParserResult parse(Path file, Map<String, String> config) {
+        return parse(file, MappedCharStream.map(file), config);
+    }
+
+    /**
+     * Same as {@link #parse(Path, Map)}, with the bytes of the file already mapped, so that they are not mapped again
+     * e.g. after computing the key of the file in the cache.
+     *
+     * @param file
+     * @param bytes bytes of the file, as given by {@link MappedCharStream#map(Path)}
+     * @param config
+     */
+    public JmmParserResult parse(Path file, ByteBuffer bytes, Map<String, String> config) {
+        return parse(cache -> cache.getAstKey(bytes), () -> MappedCharStream.open(bytes, file.toString()),
+                getDefaultRule(), config);
+    }
+
+    /**
+     * If there is a cache, the AST of code that was already parsed is read from its snapshot instead, and the AST of
+     * new code is added to the cache.
+     */
+    private JmmParserResult parse(Function<CompilationCache, String> getAstKey, Supplier<CharStream> input,
+                                  String startingRule, Map<String, String> config) {
+
+        // Only whole programs are cached
+        var cache = startingRule.equals(getDefaultRule()) ? CompilationCache.fromConfig(config).orElse(null) : null;
+        if (cache == null) {
+            return parse(input, startingRule, config, null);
+        }
+
+        var key = getAstKey.apply(cache);
+        var snapshot = cache.getAst(key);
+        if (snapshot.isPresent()) {
+            try {
+                var root = AstSnapshot.read(snapshot.get());
+                CompilationStats.current().count("astCacheHits", 1);
+                return new JmmParserResult(toConfiguredAst(root, config), new ArrayList<>(), config);
+            } catch (RuntimeException e) {
+                // Not a valid snapshot, the code is parsed again and the snapshot replaced
+            }
+        }
+
+        // Written to the cache after parsing, so that errors of the cache are not reported as errors of the code
+        var newSnapshot = new AtomicReference<byte[]>();
+        var result = parse(input, startingRule, config, newSnapshot::set);
+        if (newSnapshot.get() != null) {
+            cache.putAst(key, newSnapshot.get());
+        }
+
+        return result;
+    }
+
+    /**
+     * @param putSnapshot receives the snapshot of the AST, if the code has no errors; null if no snapshot is needed
+     */
+    private JmmParserResult parse(Supplier<CharStream> input, String startingRule, Map<String, String> config,
+                                  Consumer<byte[]> putSnapshot) {
+
+        var reusable = PARSERS.get();
+        DFA_LOCK.readLock().lock();
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
+            // The lexer transforms the characters into tokens
+            var lex = reusable.lexer;
+            var chars = input.get();
+            lex.setInputStream(chars);
+            lex.setTokenFactory(chars instanceof MappedCharStream ? COPYING_TOKEN_FACTORY : CommonTokenFactory.DEFAULT);
+            // Wrap lexer around a token stream. It is not reused, since it cannot be reset after reaching the end
             var tokens = new CommonTokenStream(lex);
             // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
-
+            var parser = reusable.parser;
+            parser.setTokenStream(tokens);
 
             // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            return parse(lex, parser, startingRule, config, putSnapshot);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
+        } finally {
+            reusable.release();
+            DFA_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parses the given files and discards the results, so that the shared DFA already has the states needed to parse
+     * similar code when the first real files are parsed.
+     *
+     * @param corpus code of representative files
+     * @return the number of DFA states after the warm-up
+     */
+    public static int warmUp(Collection<String> corpus) {
+        var parser = new JmmParserImpl();
+        for (var code : corpus) {
+            parser.parse(code, Collections.emptyMap());
+        }
+
+        return getDfaSize();
+    }
+
+    /**
+     * Discards the DFA states of the lexer and the parser, e.g. to free memory. Waits for the files being parsed.
+     */
+    public static void clearDfaCache() {
+        var reusable = PARSERS.get();
+        DFA_LOCK.writeLock().lock();
+
+        try {
+            reusable.lexer.getInterpreter().clearDFA();
+            reusable.parser.getInterpreter().clearDFA();
+        } finally {
+            DFA_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of DFA states of the lexer and the parser
+     */
+    public static int getDfaSize() {
+        var reusable = PARSERS.get();
+        DFA_LOCK.readLock().lock();
+
+        try {
+            return getDfaSize(reusable.lexer.getInterpreter().decisionToDFA)
+                    + getDfaSize(reusable.parser.getInterpreter().decisionToDFA);
+        } finally {
+            DFA_LOCK.readLock().unlock();
+        }
+    }
+
+    private static int getDfaSize(DFA[] decisionToDFA) {
+        return Arrays.stream(decisionToDFA).mapToInt(dfa -> dfa.states.size()).sum();
+    }
+
+    /**
+     * Same as {@link AntlrParser#parse(Lexer, Parser, String, Map)}, but invokes the starting rule directly instead of
+     * going through SpecsSystem.invoke, whose method cache is not thread-safe. This way, several files can be parsed
+     * at the same time.
+     * <p>
+     * The code is first parsed with SLL prediction, which is faster and enough for almost every valid input, and
+     * stops at the first syntax error. Only if that fails is the code parsed again with full LL prediction, which
+     * reports the errors, if there are any.
+     */
+    private static JmmParserResult parse(Lexer lex, Parser parser, String startingRule, Map<String, String> config,
+                                         Consumer<byte[]> putSnapshot) throws ReflectiveOperationException {
+
+        lex.removeErrorListeners();
+        var lexerListener = new JmmErrorListener(Stage.LEXICAL);
+        lex.addErrorListener(lexerListener);
+
+        parser.removeErrorListeners();
+        var parserListener = new JmmErrorListener(Stage.SYNTATIC);
+
+        var startRule = parser.getClass().getMethod(startingRule);
+
+        ParseTree node;
+        try {
+            restart(parser);
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            node = (ParseTree) startRule.invoke(parser);
+        } catch (InvocationTargetException e) {
+            if (!(e.getCause() instanceof ParseCancellationException)) {
+                throw e;
+            }
+
+            CompilationStats.current().count("llParses", 1);
+
+            // The tokens were already read, so the lexer errors are not reported twice
+            restart(parser);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.addErrorListener(parserListener);
+            node = (ParseTree) startRule.invoke(parser);
+        }
+
+        var reports = new ArrayList<Report>();
+        reports.addAll(lexerListener.getReports());
+        reports.addAll(parserListener.getReports());
+
+        if (reports.stream().anyMatch(r -> r.getType().equals(ReportType.ERROR))) {
+            return new JmmParserResult(null, reports, config);
+        }
+
+        // Nodes are only converted when they are reached, unless the grammar needs the full conversion
+        var root = LazyJmmNode.wrap(node, parser);
+        if (root == null) {
+            root = AntlrToJmmNodeConverter.convert(node, parser);
+
+            var ignoreList = AntlrParser.getIgnoreList(parser);
+            if (!ignoreList.isEmpty()) {
+                new JmmNodeCleanup(ignoreList).visit(root);
+            }
+        }
+
+        if (putSnapshot != null) {
+            // A lazy AST is written from its parse tree, so that its nodes are still only created when reached
+            var snapshot = root instanceof LazyJmmNode ? LazyJmmNode.snapshot((ParserRuleContext) node) :
+                    AstSnapshot.write(root);
+            snapshot.ifPresent(putSnapshot);
+        }
+
+        return new JmmParserResult(toConfiguredAst(root, config), reports, config);
+    }
+
+    private static JmmNode toConfiguredAst(JmmNode root, Map<String, String> config) {
+        return CompilerConfig.getCompactAst(config) ? CompactAst.of(root).getRoot() : root;
+    }
+
+    /**
+     * Rewinds the parser to the first token. Parser.reset() keeps the state where the last parse stopped, which would
+     * become the invoking state of the start rule and break the error recovery and full LL prediction.
+     */
+    private static void restart(Parser parser) {
+        parser.reset();
+        parser.setState(ATNState.INVALID_STATE_NUMBER);
+    }
+
+    /**
+     * Lexer and parser that are given a new input for each file.
+     */
+    private static class ReusableParser {
+
+        private final ANTLRInputStream emptyInput;
+        private final JavammLexer lexer;
+        private final JavammParser parser;
+
+        private ReusableParser() {
+            this.emptyInput = new ANTLRInputStream("");
+            this.lexer = new JavammLexer(emptyInput);
+            this.parser = new JavammParser(new CommonTokenStream(lexer));
+        }
+
+        /**
+         * Drops the code and tokens of the last file, so they are not kept alive by the thread.
+         */
+        private void release() {
+            lexer.setInputStream(emptyInput);
+            parser.setTokenStream(null);
         }
     }
 }
@@ -0,0 +1,334 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter;
+import pt.up.fe.comp2024.ast.AstSnapshot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * View of an ANTLR parse tree as the AST that {@link AntlrToJmmNodeConverter} would create. Each node wraps a rule
+ * context, and only reads its attributes and wraps its children when they are first asked for. Once both are read,
+ * the node no longer keeps the context.
+ * <p>
+ * After that, the node behaves as a {@link JmmNodeImpl}, so the tree can be changed as usual.
+ */
+public class LazyJmmNode extends JmmNodeImpl {
+
+    // Kind, hierarchy and public fields of each context class
+    private static final ClassValue<ContextClass> CONTEXT_CLASSES = new ClassValue<>() {
+        @Override
+        protected ContextClass computeValue(Class<?> type) {
+            return new ContextClass(type);
+        }
+    };
+
+    // If the labels of the contexts of each parser class are only tokens
+    private static final ClassValue<Boolean> WRAPPABLE_PARSERS = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return Arrays.stream(type.getClasses())
+                    .filter(ParserRuleContext.class::isAssignableFrom)
+                    .noneMatch(contextClass -> CONTEXT_CLASSES.get(contextClass).hasRuleLabels);
+        }
+    };
+
+    // The AST of a parse tree, as it is written to a snapshot
+    private static final AstSnapshot.Tree<ParserRuleContext> PARSE_TREE = new AstSnapshot.Tree<>() {
+        @Override
+        public String getKind(ParserRuleContext node) {
+            return CONTEXT_CLASSES.get(node.getClass()).kind;
+        }
+
+        @Override
+        public Collection<String> getHierarchy(ParserRuleContext node) {
+            return CONTEXT_CLASSES.get(node.getClass()).hierarchy;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes(ParserRuleContext node) {
+            return readAttributes(node);
+        }
+
+        @Override
+        public List<ParserRuleContext> getChildren(ParserRuleContext node) {
+            return getRuleChildren(node);
+        }
+    };
+
+    private ParserRuleContext context;
+    private volatile boolean hasAttributes;
+    private volatile boolean hasChildren;
+
+    private LazyJmmNode(ParserRuleContext context, ContextClass contextClass) {
+        super(contextClass.kind);
+
+        this.context = context;
+        this.hasAttributes = false;
+        this.hasChildren = false;
+
+        setHierarchy(contextClass.hierarchy);
+    }
+
+    private static LazyJmmNode of(ParserRuleContext context) {
+        return new LazyJmmNode(context, CONTEXT_CLASSES.get(context.getClass()));
+    }
+
+    /**
+     * @return the root of the AST of the given parse tree, or null if the tree needs the full conversion, i.e. the
+     * grammar has an ignore list or labels that refer to rules
+     */
+    public static JmmNode wrap(ParseTree tree, Parser parser) {
+        if (!(tree instanceof ParserRuleContext context) || !AntlrParser.getIgnoreList(parser).isEmpty()) {
+            return null;
+        }
+
+        return WRAPPABLE_PARSERS.get(parser.getClass()) ? of(context) : null;
+    }
+
+    private void loadAttributes() {
+        if (hasAttributes) {
+            return;
+        }
+
+        synchronized (this) {
+            if (hasAttributes) {
+                return;
+            }
+
+            // They are put in the base class, which does not load them
+            readAttributes(context).forEach(super::putObject);
+
+            hasAttributes = true;
+            releaseContext();
+        }
+    }
+
+    /**
+     * @return the same attributes as AntlrToJmmNodeConverter, in the same order
+     */
+    private static Map<String, Object> readAttributes(ParserRuleContext context) {
+        var attributes = new LinkedHashMap<String, Object>();
+
+        var start = context.getStart();
+        var stop = context.getStop();
+        attributes.put(NodePosition.LINE_START.getKey(), Integer.toString(start.getLine()));
+        attributes.put(NodePosition.COL_START.getKey(), Integer.toString(start.getCharPositionInLine()));
+        attributes.put(NodePosition.LINE_END.getKey(), Integer.toString(stop.getLine()));
+        attributes.put(NodePosition.COL_END.getKey(), Integer.toString(stop.getCharPositionInLine()));
+
+        for (var field : CONTEXT_CLASSES.get(context.getClass()).fields) {
+            try {
+                var value = field.get(context);
+
+                if (field.getType().isAssignableFrom(Token.class)) {
+                    // If no token for the given field, skip
+                    if (value != null) {
+                        attributes.put(field.getName(), ((Token) value).getText());
+                    }
+                } else {
+                    attributes.put(field.getName(), toAttribute(value));
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Could not access field '" + field.getName() + "' from node " + context);
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * @return the contexts of the rules below the given one. Tokens are not children of the AST
+     */
+    private static List<ParserRuleContext> getRuleChildren(ParserRuleContext context) {
+        var children = new ArrayList<ParserRuleContext>();
+        for (int i = 0; i < context.getChildCount(); i++) {
+            if (context.getChild(i) instanceof ParserRuleContext child) {
+                children.add(child);
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * @return the snapshot of the AST of the given parse tree, read from its contexts without creating the nodes of
+     * the AST, or empty if it cannot be written
+     * @see #wrap(ParseTree, Parser)
+     */
+    public static Optional<byte[]> snapshot(ParserRuleContext tree) {
+        return AstSnapshot.write(tree, PARSE_TREE);
+    }
+
+    private void loadChildren() {
+        if (hasChildren) {
+            return;
+        }
+
+        synchronized (this) {
+            if (hasChildren) {
+                return;
+            }
+
+            for (var child : getRuleChildren(context)) {
+                var node = of(child);
+                children.add(node);
+                node.setParent(this);
+            }
+
+            hasChildren = true;
+            releaseContext();
+        }
+    }
+
+    private void releaseContext() {
+        if (hasAttributes && hasChildren) {
+            context = null;
+        }
+    }
+
+    private static Object toAttribute(Object value) {
+        if (value instanceof Token token) {
+            return token.getText();
+        }
+
+        if (value instanceof List<?> list) {
+            return list.stream().map(LazyJmmNode::toAttribute).collect(Collectors.toList());
+        }
+
+        return value;
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        loadAttributes();
+        return super.getAttributes();
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        loadAttributes();
+        return super.getObject(attribute);
+    }
+
+    @Override
+    public Object putObject(String attribute, Object value) {
+        loadAttributes();
+        return super.putObject(attribute, value);
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        loadChildren();
+        return super.getChildren();
+    }
+
+    @Override
+    public int getNumChildren() {
+        loadChildren();
+        return super.getNumChildren();
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        loadChildren();
+        return children.get(index);
+    }
+
+    @Override
+    public void add(JmmNodeImpl child, int index) {
+        loadChildren();
+        super.add(child, index);
+    }
+
+    @Override
+    public void add(JmmNodeImpl child) {
+        loadChildren();
+        super.add(child);
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        loadChildren();
+        return super.removeJmmChild(index);
+    }
+
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        loadChildren();
+        return super.removeJmmChild(node);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        loadChildren();
+        super.setChild(newNode, index);
+    }
+
+    /**
+     * What {@link AntlrToJmmNodeConverter} reads from a context class, which is the same for all its contexts.
+     */
+    private static class ContextClass {
+
+        private final String kind;
+        private final List<String> hierarchy;
+        private final List<Field> fields;
+        private final boolean hasRuleLabels;
+
+        private ContextClass(Class<?> type) {
+            // All classes up to ParserRuleContext
+            var classes = new ArrayList<Class<?>>();
+            for (var current = type; !current.equals(ParserRuleContext.class); current = current.getSuperclass()) {
+                classes.add(current);
+            }
+
+            this.hierarchy = classes.stream().map(ContextClass::getKind).toList();
+            this.kind = hierarchy.get(0);
+            this.fields = classes.stream()
+                    .flatMap(aClass -> Arrays.stream(aClass.getDeclaredFields()))
+                    .filter(field -> Modifier.isPublic(field.getModifiers()))
+                    .toList();
+            // Labels of rules and lists of rules would need to be replaced by their JmmNode
+            this.hasRuleLabels = fields.stream().anyMatch(ContextClass::isRuleLabel);
+        }
+
+        private static boolean isRuleLabel(Field field) {
+            if (ParseTree.class.isAssignableFrom(field.getType())) {
+                return true;
+            }
+
+            // e.g. List<ExprContext>
+            return field.getGenericType() instanceof ParameterizedType type
+                    && Arrays.stream(type.getActualTypeArguments())
+                    .anyMatch(argument -> argument instanceof Class<?> aClass && ParseTree.class.isAssignableFrom(aClass));
+        }
+
+        private static String getKind(Class<?> type) {
+            var className = type.getSimpleName();
+
+            // Rules end with context
+            if (!className.endsWith("Context")) {
+                throw new RuntimeException("Expected classname to end with 'Context' " + className);
+            }
+
+            return className.substring(0, className.length() - "Context".length());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Characters of a source file that is mapped to memory, so the lexer reads the bytes of the file without copying them
+ * into a String or a char array first. Only the text of each token is copied, when the token is created, so that
+ * the AST does not read the file again after it was parsed.
+ * <p>
+ * Each byte is a character, so this is only used for ASCII files. Files with other characters are decoded once, since
+ * the lexer needs to go to the n-th character directly.
+ */
+public class MappedCharStream implements CharStream {
+
+    private final ByteBuffer bytes;
+    private final String sourceName;
+
+    // Index of the next character
+    private int index;
+
+    private MappedCharStream(ByteBuffer bytes, String sourceName) {
+        this.bytes = bytes;
+        this.sourceName = sourceName;
+        this.index = 0;
+    }
+
+    /**
+     * @return the characters of the given file, mapped to memory if it is an ASCII file
+     */
+    public static CharStream open(Path file) {
+        return open(map(file), file.toString());
+    }
+
+    /**
+     * @param bytes      bytes of a file, e.g. from {@link #map(Path)}; its position is not changed
+     * @param sourceName
+     * @return the characters of the given bytes, read directly if they are ASCII
+     */
+    public static CharStream open(ByteBuffer bytes, String sourceName) {
+        if (isAscii(bytes)) {
+            return new MappedCharStream(bytes.duplicate(), sourceName);
+        }
+
+        var chars = StandardCharsets.UTF_8.decode(bytes.duplicate());
+        var input = new ANTLRInputStream(chars.array(), chars.remaining());
+        input.name = sourceName;
+        return input;
+    }
+
+    /**
+     * @return a read-only buffer with the bytes of the given file, mapped to memory
+     */
+    public static ByteBuffer map(Path file) {
+        // The mapping stays valid after the channel is closed
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read file '" + file + "'", e);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void consume() {
+        if (index >= size()) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+
+        index++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            // undefined
+            return 0;
+        }
+
+        // e.g. LA(-1) is the last character read
+        var position = i < 0 ? index + i : index + i - 1;
+        if (position < 0 || position >= size()) {
+            return IntStream.EOF;
+        }
+
+        return bytes.get(position);
+    }
+
+    /**
+     * The whole file is available, so there is nothing to keep.
+     */
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = Math.min(index, size());
+    }
+
+    @Override
+    public int size() {
+        return bytes.limit();
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size() - 1);
+        if (start >= size() || stop < start) {
+            return "";
+        }
+
+        var text = new byte[stop - start + 1];
+        bytes.get(start, text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size() - 1));
+    }
+}
@@ -0,0 +1,236 @@
+package pt.up.fe.comp2024.stats;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.BytecodeResult;
+import pt.up.fe.comp2024.optimization.LazyOllirResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a single compilation: wall time, CPU time and allocated bytes of each stage and of each method, and
+ * sizes of the intermediate results (AST nodes, symbols, OLLIR instructions, Jasmin bytes).
+ * <p>
+ * Stages inside the compilation can find the stats of the compilation being done in the current thread with
+ * {@link #current()}. Times and allocations are measured with the {@link ThreadMXBean}, so they only account for the
+ * current thread. Methods may be measured from several threads at once, e.g. when they are generated concurrently.
+ */
+public class CompilationStats {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final CompilationStats DISABLED = new CompilationStats(null, false);
+    private static final ThreadLocal<CompilationStats> CURRENT = ThreadLocal.withInitial(() -> DISABLED);
+
+    // Fields are serialized as JSON
+    private final String file;
+    private final List<Measurement> stages;
+    private final List<Measurement> methods;
+    private final Map<String, Long> counts;
+    private final Map<String, Long> passNanos;
+    private final transient boolean enabled;
+
+    private CompilationStats(String file, boolean enabled) {
+        this.file = file;
+        this.stages = new ArrayList<>();
+        this.methods = new ArrayList<>();
+        this.counts = new LinkedHashMap<>();
+        this.passNanos = new LinkedHashMap<>();
+        this.enabled = enabled;
+    }
+
+    public CompilationStats(String file) {
+        this(file, true);
+    }
+
+    /**
+     * @return an instance that does not record anything
+     */
+    public static CompilationStats disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return the stats of the compilation running in the current thread, or a disabled instance
+     */
+    public static CompilationStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes these stats the current ones while the given action runs.
+     */
+    public <T> T collect(Supplier<T> action) {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <T> T measureStage(String stage, Supplier<T> action) {
+        return measure(stages, stage, null, action);
+    }
+
+    public <T> T measureMethod(String stage, String method, Supplier<T> action) {
+        return measure(methods, stage, method, action);
+    }
+
+    public void count(String name, long value) {
+        if (enabled) {
+            counts.merge(name, value, Long::sum);
+        }
+    }
+
+    /**
+     * @return the sum of the values counted with the given name, or 0 if nothing was counted
+     */
+    public long getCount(String name) {
+        return counts.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Adds to the time spent in an analysis pass, which is measured by the pass runner since passes share a traversal.
+     */
+    public void addPassTime(String pass, long nanos) {
+        if (enabled) {
+            passNanos.merge(pass, nanos, Long::sum);
+        }
+    }
+
+    public void countAst(JmmNode root) {
+        if (enabled) {
+            count("astNodes", root.getDescendants().size() + 1);
+        }
+    }
+
+    public void countSymbols(SymbolTable table) {
+        if (!enabled) {
+            return;
+        }
+
+        count("imports", table.getImports().size());
+        count("fields", table.getFields().size());
+        count("methods", table.getMethods().size());
+        for (var method : table.getMethods()) {
+            count("parameters", table.getParameters(method).size());
+            count("locals", table.getLocalVariables(method).size());
+        }
+    }
+
+    public void countOllir(OllirResult ollirResult) {
+        if (!enabled) {
+            return;
+        }
+
+        // Built classes only write their code if it is asked for, which counting should not do
+        if (!(ollirResult instanceof LazyOllirResult lazyResult) || lazyResult.hasOllirCode()) {
+            count("ollirBytes", ollirResult.getOllirCode().getBytes(StandardCharsets.UTF_8).length);
+        }
+        count("ollirInstructions", ollirResult.getOllirClass().getMethods().stream()
+                .map(Method::getInstructions)
+                .mapToLong(List::size)
+                .sum());
+    }
+
+    public void countJasmin(JasminResult jasminResult) {
+        if (!enabled) {
+            return;
+        }
+
+        // The direct bytecode backend does not generate Jasmin code unless it is requested
+        if (jasminResult instanceof BytecodeResult) {
+            count("classBytes", ((BytecodeResult) jasminResult).getClassBytes().length);
+            return;
+        }
+
+        var jasminCode = jasminResult.getJasminCode();
+        count("jasminBytes", jasminCode.getBytes(StandardCharsets.UTF_8).length);
+        // Lines that are not directives, labels or empty
+        count("jasminInstructions", jasminCode.lines()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith(".") && !line.endsWith(":"))
+                .count());
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    public static String toJson(List<CompilationStats> stats) {
+        return GSON.toJson(stats);
+    }
+
+    private <T> T measure(List<Measurement> measurements, String stage, String method, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+
+        long startWall = System.nanoTime();
+        long startCpu = getCpuTime();
+        long startAllocated = getAllocatedBytes();
+
+        try {
+            return action.get();
+        } finally {
+            var measurement = new Measurement(stage, method,
+                    System.nanoTime() - startWall,
+                    getCpuTime() - startCpu,
+                    getAllocatedBytes() - startAllocated);
+
+            synchronized (measurements) {
+                measurements.add(measurement);
+            }
+        }
+    }
+
+    private static long getCpuTime() {
+        return THREAD_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long getAllocatedBytes() {
+        // Allocated bytes are only available in the HotSpot extension of the bean
+        if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean hotspotBean && hotspotBean.isThreadAllocatedMemorySupported()) {
+            return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    private static class Measurement {
+
+        private final String stage;
+        private final String method;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        private Measurement(String stage, String method, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.stage = stage;
+            this.method = method;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
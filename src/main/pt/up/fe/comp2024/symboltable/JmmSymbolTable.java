@@ -3,10 +3,12 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.ast.ExprTypes;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +20,9 @@ public class JmmSymbolTable implements SymbolTable {
     private final Map<String, Type> returnTypes;
     private final Map<String, List<Symbol>> params;
     private final Map<String, List<Symbol>> locals;
+    private final List<Symbol> fields;
+    private final Map<String, MethodScope> scopes;
+    private final ExprTypes exprTypes;
 
     public JmmSymbolTable(List<String> imports,
                           String className,
@@ -33,6 +38,33 @@ public class JmmSymbolTable implements SymbolTable {
         this.returnTypes = returnTypes;
         this.params = params;
         this.locals = locals;
+        this.fields = Collections.unmodifiableList(locals.getOrDefault(className, List.of()));
+        this.exprTypes = new ExprTypes();
+
+        this.scopes = new HashMap<>();
+        for (var method : methods) {
+            scopes.put(method, MethodScope.build(this, method));
+        }
+    }
+
+    /**
+     * @param methodName
+     * @return the names that can be used inside the method
+     */
+    public MethodScope getScope(String methodName) {
+        var scope = scopes.get(methodName);
+        if (scope == null) {
+            throw new RuntimeException("Method '" + methodName + "' is not declared in class '" + className + "'");
+        }
+
+        return scope;
+    }
+
+    /**
+     * @return the types of the expressions of the AST this table was built from
+     */
+    public ExprTypes getExprTypes() {
+        return exprTypes;
     }
 
     @Override
@@ -52,10 +84,8 @@ public class JmmSymbolTable implements SymbolTable {
 
     @Override
     public List<Symbol> getFields() {
-        // Return the locals of the class declaration
-        return getLocalVariables(className);
-
-
+        // The locals of the class declaration
+        return fields;
     }
 
     @Override
@@ -0,0 +1,67 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Index of the names that can be used inside a method, to resolve each of them with a single lookup.
+ * <p>
+ * Locals hide parameters, which hide fields, which hide imported classes.
+ */
+public class MethodScope {
+
+    private final Map<String, ResolvedSymbol> symbols;
+
+    private MethodScope(Map<String, ResolvedSymbol> symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * @param table
+     * @param methodName
+     * @return the scope of the method, which {@link JmmSymbolTable} builds only once
+     */
+    public static MethodScope get(SymbolTable table, String methodName) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getScope(methodName);
+        }
+
+        return build(table, methodName);
+    }
+
+    static MethodScope build(SymbolTable table, String methodName) {
+        var symbols = new HashMap<String, ResolvedSymbol>();
+
+        for (var local : table.getLocalVariables(methodName)) {
+            symbols.putIfAbsent(local.getName(), new ResolvedSymbol(local, ResolvedSymbol.Kind.LOCAL, -1));
+        }
+
+        var params = table.getParameters(methodName);
+        for (int i = 0; i < params.size(); i++) {
+            var param = params.get(i);
+            symbols.putIfAbsent(param.getName(), new ResolvedSymbol(param, ResolvedSymbol.Kind.PARAMETER, i));
+        }
+
+        for (var field : table.getFields()) {
+            symbols.putIfAbsent(field.getName(), new ResolvedSymbol(field, ResolvedSymbol.Kind.FIELD, -1));
+        }
+
+        for (var imported : table.getImports()) {
+            symbols.putIfAbsent(imported, new ResolvedSymbol(new Symbol(null, imported), ResolvedSymbol.Kind.IMPORT, -1));
+        }
+
+        return new MethodScope(symbols);
+    }
+
+    /**
+     * @param name
+     * @return what the name refers to, or empty if it was not declared
+     */
+    public Optional<ResolvedSymbol> resolve(String name) {
+        return Optional.ofNullable(symbols.get(name));
+    }
+}
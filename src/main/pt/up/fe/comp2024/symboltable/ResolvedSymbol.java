@@ -0,0 +1,53 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * What a name used inside a method refers to.
+ */
+public class ResolvedSymbol {
+
+    public enum Kind {
+        LOCAL,
+        PARAMETER,
+        FIELD,
+        IMPORT
+    }
+
+    private final Symbol symbol;
+    private final Kind kind;
+    private final int index;
+
+    ResolvedSymbol(Symbol symbol, Kind kind, int index) {
+        this.symbol = symbol;
+        this.kind = kind;
+        this.index = index;
+    }
+
+    /**
+     * @return the declaration of the name, for imports a symbol with the name of the imported class and no type
+     */
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the position of the parameter in the method, starting at 0, or -1 if this is not a parameter
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean is(Kind kind) {
+        return this.kind == kind;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + symbol.getName();
+    }
+}
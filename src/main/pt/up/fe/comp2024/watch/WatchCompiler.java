@@ -0,0 +1,254 @@
+package pt.up.fe.comp2024.watch;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.batch.BatchCompiler;
+import pt.up.fe.comp2024.batch.BatchResult;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the Java-- files of a directory whenever they change, given with '-watch'.
+ * <p>
+ * Every file is compiled when the watch starts. After that, only the files that changed are compiled again, together
+ * with the files that import the class of a changed file. Changes that arrive close to each other, e.g. an editor
+ * that saves several files, are compiled together. Since the compiler keeps running, the classes of all stages and
+ * the DFA cache of the parser stay warm between compilations.
+ * <p>
+ * The class of a changed file is read from its AST before the file is compiled, and the compilation reuses that AST
+ * instead of parsing the file again. The symbol tables and analyses of unchanged files are not kept: a Java-- file is
+ * analysed on its own, only with the names of the classes it imports, so a file that imports a changed class is
+ * compiled again from its code, or from its cached results with '-cache'.
+ */
+public class WatchCompiler implements Runnable, AutoCloseable {
+
+    private static final String JMM_EXTENSION = ".jmm";
+
+    // Time without new changes before the changed files are compiled
+    private static final long DEBOUNCE_MILLIS = 20;
+
+    private final Path root;
+    private final Map<String, String> config;
+    private final BatchCompiler compiler;
+    private final Consumer<BatchResult> onCompile;
+    private final WatchService watchService;
+
+    // Class declared and classes imported by each file
+    private final Map<Path, ClassInfo> classes;
+
+    /**
+     * @param config    configuration with the directory to watch, and the options of each compilation
+     * @param onCompile called with the result of each compilation
+     */
+    public WatchCompiler(Map<String, String> config, Consumer<BatchResult> onCompile) {
+        this.root = CompilerConfig.getWatchDir(config)
+                .orElseThrow(() -> new RuntimeException("Expected a directory to watch, use '-watch=<DIR>'"))
+                .toPath();
+        this.config = config;
+        this.compiler = new BatchCompiler(config);
+        this.onCompile = onCompile;
+        this.classes = new HashMap<>();
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not watch directory '" + root + "'", e);
+        }
+
+        register(root);
+    }
+
+    /**
+     * Compiles every file, and then the files that change, until the watch is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            compile(BatchCompiler.collectInputs(root.toString()).stream().map(File::toPath).toList());
+
+            while (true) {
+                var changed = new TreeSet<Path>();
+
+                // Waits for the first change, and then until there are no more changes for a while
+                var key = watchService.take();
+                while (key != null) {
+                    changed.addAll(getChangedFiles(key));
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (!changed.isEmpty()) {
+                    compile(changed);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // The watch was closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close the watch of '" + root + "'", e);
+        }
+    }
+
+    /**
+     * Compiles the given files, which were added, changed or deleted, and the files that import their classes.
+     *
+     * @param changedFiles
+     * @return the result of the compilation
+     */
+    public synchronized BatchResult compile(Collection<Path> changedFiles) {
+        var changedClasses = new TreeSet<String>();
+        var toCompile = new TreeSet<Path>();
+        var parsed = new HashMap<File, JmmParserResult>();
+
+        for (var file : changedFiles) {
+            var absoluteFile = file.toAbsolutePath().normalize();
+
+            // Both the old and the new class of the file, if it was renamed
+            var previous = classes.remove(absoluteFile);
+            if (previous != null) {
+                changedClasses.add(previous.name);
+            }
+
+            if (!Files.isRegularFile(absoluteFile)) {
+                continue;
+            }
+
+            JmmParserResult parserResult;
+            try {
+                parserResult = new JmmParserImpl().parse(absoluteFile, config);
+            } catch (RuntimeException e) {
+                // A file deleted after it was listed is the same as a deleted file. Otherwise, its compilation reports
+                // the error
+                if (Files.isRegularFile(absoluteFile)) {
+                    toCompile.add(absoluteFile);
+                }
+
+                continue;
+            }
+
+            var current = ClassInfo.read(absoluteFile, parserResult.getRootNode());
+            classes.put(absoluteFile, current);
+            changedClasses.add(current.name);
+            toCompile.add(absoluteFile);
+            parsed.put(absoluteFile.toFile(), parserResult);
+        }
+
+        classes.forEach((file, info) -> {
+            if (info.imports.stream().anyMatch(changedClasses::contains)) {
+                toCompile.add(file);
+            }
+        });
+
+        var result = compiler.compile(toCompile.stream().map(Path::toFile).collect(Collectors.toList()), parsed);
+        onCompile.accept(result);
+
+        return result;
+    }
+
+    private List<Path> getChangedFiles(WatchKey key) {
+        var directory = (Path) key.watchable();
+
+        var changed = key.pollEvents().stream()
+                .filter(event -> event.kind() != StandardWatchEventKinds.OVERFLOW)
+                .map(event -> directory.resolve((Path) event.context()))
+                .toList();
+
+        // New directories are watched as well
+        changed.stream().filter(Files::isDirectory).forEach(this::register);
+
+        key.reset();
+
+        return changed.stream()
+                .flatMap(path -> Files.isDirectory(path) ? collect(path) : Stream.of(path))
+                .filter(path -> path.toString().endsWith(JMM_EXTENSION))
+                .toList();
+    }
+
+    private Stream<Path> collect(Path directory) {
+        return BatchCompiler.collectInputs(directory.toString()).stream().map(File::toPath);
+    }
+
+    private void register(Path directory) {
+        try (var directories = Files.walk(directory)) {
+            for (var subdirectory : directories.filter(Files::isDirectory).toList()) {
+                subdirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not watch directory '" + directory + "'", e);
+        }
+    }
+
+    /**
+     * Name of the class declared in a file and of the classes it imports.
+     */
+    private static class ClassInfo {
+
+        private final String name;
+        private final Set<String> imports;
+
+        private ClassInfo(String name, Set<String> imports) {
+            this.name = name;
+            this.imports = imports;
+        }
+
+        /**
+         * Only the top of the AST is reached, the rest is left to the compilation, which is given the same AST. With
+         * '-cache', its snapshot is written from the parse tree, so it does not create the rest of the AST either.
+         *
+         * @param file
+         * @param root root of the AST of the file, or null if it has syntax errors
+         */
+        private static ClassInfo read(Path file, JmmNode root) {
+            // With syntax errors, the file is compiled again, but no file depends on it
+            if (root == null) {
+                return new ClassInfo(file.getFileName().toString(), Set.of());
+            }
+
+            var name = root.getChildren(Kind.CLASS_DECL).stream()
+                    .map(classDecl -> classDecl.get("name"))
+                    .findFirst()
+                    .orElse(file.getFileName().toString());
+
+            // The imported class is the last part of the import, e.g. 'Bar' in 'import foo.Bar;'
+            var imports = root.getChildren(Kind.IMPORT_DECL).stream()
+                    .map(ClassInfo::getImportedClass)
+                    .collect(Collectors.toSet());
+
+            return new ClassInfo(name, imports);
+        }
+
+        private static String getImportedClass(JmmNode importDecl) {
+            var parts = importDecl.getObjectAsList("name", String.class);
+            return parts.get(parts.size() - 1);
+        }
+    }
+}
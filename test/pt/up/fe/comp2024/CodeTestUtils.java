@@ -0,0 +1,31 @@
+package pt.up.fe.comp2024;
+
+import java.util.function.IntFunction;
+
+/**
+ * Java-- code generated for the tests that need classes with many methods.
+ */
+public class CodeTestUtils {
+
+    private CodeTestUtils() {
+    }
+
+    /**
+     * @param numMethods
+     * @param fields     declarations at the start of the class, one per line
+     * @param body       statements of the i-th method, one per line, which has the parameter 'int a' and returns an int
+     * @return the code of class 'Many', with the methods 'public int m0(int a)', 'm1' and so on
+     */
+    public static String generateClass(int numMethods, String fields, IntFunction<String> body) {
+        var code = new StringBuilder("class Many {\n");
+        fields.lines().forEach(line -> code.append("    ").append(line).append("\n"));
+
+        for (int i = 0; i < numMethods; i++) {
+            code.append("    public int m").append(i).append("(int a) {\n");
+            body.apply(i).lines().forEach(line -> code.append("        ").append(line).append("\n"));
+            code.append("    }\n");
+        }
+
+        return code.append("}\n").toString();
+    }
+}
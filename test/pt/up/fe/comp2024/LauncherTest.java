@@ -0,0 +1,61 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class LauncherTest {
+
+    private static final String INPUT = "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm";
+
+    @Test
+    public void stopsAfterTheGivenStage() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-stop-after=semantic"});
+        var stats = new CompilationStats(INPUT);
+
+        assertNull(Launcher.compile(SpecsIo.read(new File(INPUT)), config, stats));
+
+        var stages = JsonParser.parseString(stats.toJson()).getAsJsonObject().getAsJsonArray("stages");
+        assertEquals(2, stages.size());
+        assertEquals("semantic", stages.get(1).getAsJsonObject().get("stage").getAsString());
+    }
+
+    @Test
+    public void emitStopsAfterItsStage() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-emit=ollir"});
+        var code = SpecsIo.read(new File(INPUT));
+
+        assertEquals(CompilerConfig.OLLIR_STAGE, CompilerConfig.getStopAfter(config));
+
+        var out = System.out;
+        var emitted = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(emitted, true, StandardCharsets.UTF_8));
+        try {
+            assertNull(Launcher.compile(code, config));
+        } finally {
+            System.setOut(out);
+        }
+
+        var ollirCode = TestUtils.optimize(code, config).getOllirCode();
+        assertTrue(emitted.toString(StandardCharsets.UTF_8).contains(ollirCode));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void emitNeedsItsStage() {
+        CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-stop-after=parse", "-emit=jasmin"});
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsUnknownStages() {
+        CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-stop-after=link"});
+    }
+}
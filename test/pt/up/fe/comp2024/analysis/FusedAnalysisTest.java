@@ -0,0 +1,146 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FusedAnalysisTest {
+
+    private static final String CODE = """
+            class Fused {
+                public int foo(int a) {
+                    int b;
+                    b = a + 1;
+                    return b * 2;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static class Recorder extends AnalysisVisitor {
+        private final List<String> log;
+        private final String name;
+
+        private Recorder(List<String> log, String name) {
+            this.log = log;
+            this.name = name;
+        }
+
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.METHOD_DECL, this::visitNode);
+            addVisit(Kind.BINARY_EXPR, this::visitNode);
+        }
+
+        protected Void visitNode(JmmNode node, SymbolTable table) {
+            log.add(name + ":" + node.getKind());
+            return null;
+        }
+    }
+
+    private static class ParentKindRecorder extends Recorder {
+        private ParentKindRecorder(List<String> log) {
+            super(log, "parent");
+        }
+
+        @Override
+        public void buildVisitor() {
+            addVisit("Stmt", this::visitNode);
+            addVisit("Expr", this::visitNode);
+            addVisit(Kind.BINARY_EXPR, this::visitNode);
+        }
+    }
+
+    private static class DependentRecorder extends Recorder {
+        private DependentRecorder(List<String> log) {
+            super(log, "dependent");
+        }
+
+        @Override
+        public List<Class<? extends AnalysisPass>> getDependencies() {
+            return List.of(Recorder.class);
+        }
+    }
+
+    private static class Failing extends AnalysisVisitor {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.BINARY_EXPR, (node, table) -> {
+                throw new RuntimeException("fails");
+            });
+        }
+    }
+
+    @Test
+    public void dispatchesEachNodeToInterestedPassesInDependencyOrder() {
+        var root = TestUtils.parse(CODE).getRootNode();
+        var log = new ArrayList<String>();
+
+        // The dependent pass is given first, but must see each node after its dependency
+        var analysis = new FusedAnalysis(List.of(new DependentRecorder(log), new Recorder(log, "base")));
+        analysis.analyze(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(List.of(
+                "base:MethodDecl", "dependent:MethodDecl",
+                "base:BinaryExpr", "dependent:BinaryExpr",
+                "base:BinaryExpr", "dependent:BinaryExpr",
+                "base:MethodDecl", "dependent:MethodDecl"), log);
+    }
+
+    @Test
+    public void visitsOfParentKindsAreUsed() {
+        var root = TestUtils.parse(CODE).getRootNode();
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var expected = new ArrayList<String>();
+        new ParentKindRecorder(expected).analyze(root, table);
+
+        var log = new ArrayList<String>();
+        new FusedAnalysis(List.of(new ParentKindRecorder(log))).analyze(root, table);
+
+        assertTrue(log.contains("parent:AssignStmt"));
+        assertTrue(log.contains("parent:VarRefExpr"));
+        assertEquals(expected, log);
+    }
+
+    @Test
+    public void failingPassIsReportedAndOthersContinue() {
+        var root = TestUtils.parse(CODE).getRootNode();
+        var log = new ArrayList<String>();
+
+        var analysis = new FusedAnalysis(List.of(new Failing(), new Recorder(log, "base")));
+        var reports = analysis.analyze(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(1, reports.size());
+        assertEquals(ReportType.ERROR, reports.get(0).getType());
+        assertEquals(4, log.size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void missingDependencyIsAnError() {
+        new FusedAnalysis(List.of(new DependentRecorder(new ArrayList<>())));
+    }
+
+    @Test
+    public void recordsTimePerPass() {
+        var root = TestUtils.parse(CODE).getRootNode();
+        var stats = new CompilationStats("Fused.jmm");
+        var analysis = new FusedAnalysis(List.of(new Recorder(new ArrayList<>(), "base")));
+
+        stats.collect(() -> analysis.analyze(root, JmmSymbolTableBuilder.build(root)));
+
+        assertTrue(analysis.getPassNanos().get("Recorder") > 0);
+        assertTrue(stats.toJson().contains("\"Recorder\""));
+    }
+}
@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CodeTestUtils;
+import pt.up.fe.comp2024.analysis.passes.AllPasses;
+import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelAnalysisTest {
+
+    // Reports each variable with the method it was found in
+    private static class MethodRecorder extends AnalysisVisitor {
+        private String currentMethod;
+
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+            addVisit(Kind.VAR_REF_EXPR, this::visitVarRefExpr);
+        }
+
+        private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+            currentMethod = method.get("name");
+            return null;
+        }
+
+        private Void visitVarRefExpr(JmmNode varRef, SymbolTable table) {
+            addReport(Report.newLog(Stage.SEMANTIC, -1, -1, currentMethod + ":" + varRef.get("name"), null));
+            return null;
+        }
+    }
+
+    // Each method has an undeclared variable and a type error
+    private static String generateClass(int numMethods) {
+        return CodeTestUtils.generateClass(numMethods, "int field;",
+                i -> "int b;\nb = a + undeclared" + i + ";\nreturn b + true;");
+    }
+
+    private static List<String> messages(List<Report> reports) {
+        return reports.stream().map(Report::getMessage).collect(Collectors.toList());
+    }
+
+    @Test
+    public void reportsAreMergedInSourceOrder() {
+        var root = TestUtils.parse(generateClass(50)).getRootNode();
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var sequential = new FusedAnalysis(List.of(new MethodRecorder())).analyze(root, table);
+
+        var pool = new ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 5; run++) {
+                var parallel = new ParallelAnalysis(() -> List.of(new MethodRecorder()), pool).analyze(root, table);
+                assertEquals(messages(sequential), messages(parallel));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void findsTheSameErrorsAsASingleTraversal() {
+        var root = TestUtils.parse(generateClass(20)).getRootNode();
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var sequential = new FusedAnalysis(List.of(new UndeclaredVariable(), new AllPasses())).analyze(root, table);
+        var parallel = new ParallelAnalysis(() -> List.of(new UndeclaredVariable(), new AllPasses()),
+                ForkJoinPool.commonPool()).analyze(root, table);
+
+        assertEquals(countMessages(sequential), countMessages(parallel));
+    }
+
+    @Test
+    public void semanticAnalysisIsTheSameWithOneOrMoreThreads() {
+        var code = generateClass(10);
+
+        var oneThread = TestUtils.analyse(code, Map.of("threads", "1")).getReports();
+        var moreThreads = TestUtils.analyse(code, Map.of("threads", "4")).getReports();
+
+        assertEquals(countMessages(oneThread), countMessages(moreThreads));
+    }
+
+    private static Map<String, Long> countMessages(List<Report> reports) {
+        return reports.stream().collect(Collectors.groupingBy(Report::getMessage, Collectors.counting()));
+    }
+}
@@ -0,0 +1,79 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.cache.CompilationCache;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.ast.AstTestUtils.RESOURCES;
+import static pt.up.fe.comp2024.ast.AstTestUtils.assertSameTree;
+
+public class AstSnapshotTest {
+
+    @Test
+    public void readsTheSameTree() {
+        for (var resource : RESOURCES) {
+            var root = TestUtils.parse(SpecsIo.getResource(resource)).getRootNode();
+
+            var snapshot = AstSnapshot.write(root).orElseThrow();
+
+            assertSameTree(root, AstSnapshot.read(snapshot));
+        }
+    }
+
+    @Test
+    public void writesDeepTrees() {
+        var root = new JmmNodeImpl("Root");
+        var node = root;
+        for (int i = 0; i < 100_000; i++) {
+            var child = new JmmNodeImpl("Child");
+            child.put("depth", Integer.toString(i));
+            node.add(child);
+            node = child;
+        }
+
+        var read = AstSnapshot.read(AstSnapshot.write(root).orElseThrow());
+
+        var depth = 0;
+        for (var current = read; current.getNumChildren() > 0; current = current.getJmmChild(0)) {
+            depth++;
+        }
+        assertEquals(100_000, depth);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsTruncatedSnapshots() {
+        var root = TestUtils.parse(SpecsIo.getResource(RESOURCES.get(0))).getRootNode();
+        var snapshot = AstSnapshot.write(root).orElseThrow();
+
+        AstSnapshot.read(Arrays.copyOf(snapshot, snapshot.length / 2));
+    }
+
+    @Test
+    public void unchangedCodeIsNotParsedAgain() throws IOException {
+        var cacheDir = Files.createTempDirectory("jmm-cache").toFile();
+        var config = Map.of("cache", cacheDir.getPath());
+        var code = SpecsIo.getResource(RESOURCES.get(1));
+
+        var parsed = TestUtils.parse(code, config).getRootNode();
+        var cache = CompilationCache.fromConfig(config).orElseThrow();
+        assertTrue(cache.getAst(cache.getAstKey(code)).isPresent());
+
+        var stats = new CompilationStats("cached");
+        var loaded = stats.collect(() -> TestUtils.parse(code, config)).getRootNode();
+
+        assertEquals(1, stats.getCount("astCacheHits"));
+        assertEquals(0, stats.getCount("llParses"));
+        assertSameTree(parsed, loaded);
+
+        SpecsIo.deleteFolder(cacheDir);
+    }
+}
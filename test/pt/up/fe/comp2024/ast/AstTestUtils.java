@@ -0,0 +1,46 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Files and assertions shared by the tests of the different representations of the AST.
+ */
+public class AstTestUtils {
+
+    /**
+     * Files whose trees have calls, control flow, arrays and varargs.
+     */
+    public static final List<String> RESOURCES = List.of(
+            "pt/up/fe/comp/cp2/ollir/CompileMethodInvocation.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/arrays/ArrayVarArgs.jmm"
+    );
+
+    private AstTestUtils() {
+    }
+
+    /**
+     * Checks that both trees have the same kinds, hierarchies, attributes and children, and that the parent of each
+     * child of the actual tree is its parent node.
+     */
+    public static void assertSameTree(JmmNode expected, JmmNode actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(expected.getHierarchy(), actual.getHierarchy());
+        assertEquals(new HashSet<>(expected.getAttributes()), new HashSet<>(actual.getAttributes()));
+        for (var attribute : expected.getAttributes()) {
+            assertEquals(expected.getObject(attribute), actual.getObject(attribute));
+        }
+
+        assertEquals(expected.getNumChildren(), actual.getNumChildren());
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            assertSame(actual, actual.getJmmChild(i).getParent());
+            assertSameTree(expected.getJmmChild(i), actual.getJmmChild(i));
+        }
+    }
+}
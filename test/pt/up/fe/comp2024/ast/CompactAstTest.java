@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.ast.AstTestUtils.RESOURCES;
+import static pt.up.fe.comp2024.ast.AstTestUtils.assertSameTree;
+
+public class CompactAstTest {
+
+    private static final Map<String, String> COMPACT = Map.of("compactAst", "true");
+
+    @Test
+    public void keepsKindsAttributesAndChildren() {
+        for (var resource : RESOURCES) {
+            var code = SpecsIo.getResource(resource);
+
+            var root = TestUtils.parse(code).getRootNode();
+            var compact = TestUtils.parse(code, COMPACT).getRootNode();
+
+            assertTrue(compact instanceof CompactAst.Node);
+            assertSameTree(root, compact);
+            assertEquals(root.getDescendants(Kind.TYPE).size(), compact.getDescendants(Kind.TYPE).size());
+        }
+    }
+
+    @Test
+    public void eachNodeHasASingleAdapter() {
+        var root = TestUtils.parse(SpecsIo.getResource(RESOURCES.get(0)), COMPACT).getRootNode();
+
+        var classDecl = root.getChildren(Kind.CLASS_DECL).get(0);
+        assertSame(classDecl, root.getJmmChild(classDecl.getIndexOfSelf()));
+        assertSame(classDecl, classDecl.getJmmChild(0).getParent());
+        assertEquals(NodeUtils.getIntegerAttribute(classDecl, "lineStart", "-1"), NodeUtils.getLine(classDecl));
+    }
+
+    @Test
+    public void compilesToTheSameOllir() {
+        var code = SpecsIo.getResource(RESOURCES.get(1));
+
+        assertEquals(TestUtils.optimize(code, Map.of()).getOllirCode(), TestUtils.optimize(code, COMPACT).getOllirCode());
+    }
+
+    @Test
+    public void reportsTheSameLocations() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/semanticanalysis/VarNotDeclared.jmm");
+
+        var expected = TestUtils.analyse(code).getReports();
+        var actual = TestUtils.analyse(code, COMPACT).getReports();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLine(), actual.get(i).getLine());
+            assertEquals(expected.get(i).getColumn(), actual.get(i).getColumn());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void structureCannotBeChanged() {
+        var root = TestUtils.parse(SpecsIo.getResource(RESOURCES.get(0)), COMPACT).getRootNode();
+
+        root.getJmmChild(0).detach();
+    }
+}
@@ -0,0 +1,47 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import static org.junit.Assert.*;
+
+public class TypeUtilsTest {
+
+    private static final String CODE = """
+            class Types {
+                int field;
+                public int foo(int a, boolean b) {
+                    int c;
+                    c = (a + field) * (a - 1);
+                    b = c < a && b;
+                    return c;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    @Test
+    public void typesAreComputedOnce() {
+        var result = TestUtils.analyse(CODE);
+        TestUtils.noErrors(result);
+
+        var table = (JmmSymbolTable) result.getSymbolTable();
+
+        // The analysis already typed the expressions
+        var typed = table.getExprTypes().size();
+        assertTrue(typed > 0);
+
+        for (var expr : result.getRootNode().getDescendants(Kind.BINARY_EXPR)) {
+            var type = TypeUtils.getExprType(expr, table);
+            assertSame(type, TypeUtils.getExprType(expr, table));
+        }
+
+        var assigns = result.getRootNode().getDescendants(Kind.ASSIGN_STMT);
+        assertEquals(new Type("int", false), TypeUtils.getExprType(assigns.get(0).getJmmChild(1), table));
+        assertEquals(new Type("boolean", false), TypeUtils.getExprType(assigns.get(1).getJmmChild(1), table));
+        assertEquals(typed, table.getExprTypes().size());
+    }
+}
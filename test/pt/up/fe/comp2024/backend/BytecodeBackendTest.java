@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BytecodeBackendTest {
+
+    private static final String OLLIR_DIR = "pt/up/fe/comp/cpf/4_jasmin/";
+
+    private static BytecodeResult generate(String resource) {
+        var ollirResult = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+        return (BytecodeResult) new BytecodeBackendImpl().toJasmin(ollirResult);
+    }
+
+    @Test
+    public void classWithLoopsVerifies() throws Exception {
+        var result = generate("control_flow/IfWhileNested.ollir");
+
+        // Branches need frames in a version 52 class file
+        var classBytes = result.getClassBytes();
+        assertEquals(52, ((classBytes[6] & 0xFF) << 8) | (classBytes[7] & 0xFF));
+        assertTrue(new String(classBytes, StandardCharsets.ISO_8859_1).contains("StackMapTable"));
+
+        var outputDir = SpecsIo.getTempFolder("jmm-bytecode");
+        SpecsIo.deleteFolderContents(outputDir);
+        result.compile(outputDir);
+
+        var classpath = new URL[]{outputDir.toURI().toURL(), new File("libs-jmm/compiled").toURI().toURL()};
+        try (var loader = new URLClassLoader(classpath, null)) {
+            // Initializing the class links it, which runs the verifier
+            var generatedClass = Class.forName(result.getClassName(), true, loader);
+            assertNotNull(generatedClass.getMethod("main", String[].class));
+        }
+    }
+
+    @Test
+    public void runsLikeJasminBackend() {
+        for (var resource : new String[]{"control_flow/SimpleWhileStat.ollir", "control_flow/SimpleIfElseNot.ollir",
+                "arrays/ComplexArrayAccess.ollir", "arithmetic/Arithmetic_less.ollir"}) {
+
+            var ollirResult = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+            var expected = new JasminBackendImpl().toJasmin(ollirResult).run();
+
+            assertEquals(resource, expected, generate(resource).run());
+        }
+    }
+
+    @Test
+    public void jasminCodeIsGeneratedOnRequest() {
+        var result = generate("arithmetic/Arithmetic_and.ollir");
+
+        assertTrue(result.getJasminCode().contains(".class"));
+
+        // Generation is deterministic
+        assertArrayEquals(generate("arithmetic/Arithmetic_and.ollir").getClassBytes(), result.getClassBytes());
+    }
+}
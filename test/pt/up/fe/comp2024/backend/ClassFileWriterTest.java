@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.jar.JarFile;
+
+import static org.junit.Assert.*;
+
+public class ClassFileWriterTest {
+
+    private static final String INPUT = "test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm";
+
+    @Test
+    public void writesLoadableClassToDirectory() throws Exception {
+        var outputDir = Files.createTempDirectory("jmm-classes").toFile();
+        var jasminResult = compile();
+
+        try (var classWriter = new ClassFileWriter(outputDir)) {
+            assertEquals(jasminResult.getClassName(), classWriter.write(jasminResult));
+        }
+
+        // Only the class file is written, no intermediate Jasmin file
+        var files = outputDir.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(jasminResult.getClassName() + ".class", files[0].getName());
+
+        try (var loader = new URLClassLoader(new URL[]{outputDir.toURI().toURL()}, null)) {
+            assertEquals(jasminResult.getClassName(), loader.loadClass(jasminResult.getClassName()).getName());
+        }
+
+        SpecsIo.deleteFolder(outputDir);
+    }
+
+    @Test
+    public void writesClassToJar() throws IOException {
+        var outputDir = Files.createTempDirectory("jmm-classes").toFile();
+        var jarFile = new File(outputDir, "out.jar");
+        var jasminResult = compile();
+
+        try (var classWriter = new ClassFileWriter(jarFile)) {
+            classWriter.write(jasminResult);
+        }
+
+        try (var jar = new JarFile(jarFile)) {
+            var entry = jar.getJarEntry(jasminResult.getClassName() + ".class");
+            assertNotNull(entry);
+
+            var bytes = jar.getInputStream(entry).readAllBytes();
+            assertArrayEquals(ClassFileWriter.assemble(jasminResult.getJasminCode(), jasminResult.getClassName()), bytes);
+        }
+
+        SpecsIo.deleteFolder(outputDir);
+    }
+
+    private static JasminResult compile() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT});
+        return Launcher.compile(SpecsIo.read(new File(INPUT)), config);
+    }
+}
@@ -0,0 +1,107 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class JasminGeneratorTest {
+
+    private static String generate(String ollirCode) {
+        var ollirResult = new OllirResult(ollirCode, Collections.emptyMap());
+        return new JasminBackendImpl().toJasmin(ollirResult).getJasminCode();
+    }
+
+    private static int getStackLimit(String jasminCode, String methodName) {
+        var matcher = Pattern.compile("\\.method .*" + methodName + "\\(.*\\n\\s*\\.limit locals \\d+\\n\\s*\\.limit stack (\\d+)")
+                .matcher(jasminCode);
+        assertTrue("Could not find stack limit of method " + methodName + " in:\n" + jasminCode, matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Test
+    public void stackLimitIsExact() {
+        var arrayStore = generate(SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAccess.ollir"));
+        // aload, index and value of iastore
+        assertEquals(3, getStackLimit(arrayStore, "main"));
+
+        var loops = generate(SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.ollir"));
+        assertEquals(2, getStackLimit(loops, "func"));
+    }
+
+    @Test
+    public void callsUseTheirDescriptor() {
+        var jasminCode = generate("Calls {\n" +
+                ".construct Calls().V {\ninvokespecial(this, \"<init>\").V;\n}\n" +
+                ".method public foo(a.i32, b.i32).i32 {\nret.i32 a.i32;\n}\n" +
+                ".method public static main(args.array.String).V {\n" +
+                "c.Calls :=.Calls new(Calls).Calls;\n" +
+                "invokespecial(c.Calls, \"<init>\").V;\n" +
+                "invokevirtual(c.Calls, \"foo\", 1.i32, 2.i32).i32;\n" +
+                "ret.V;\n}\n}");
+
+        // Object and two arguments
+        assertEquals(3, getStackLimit(jasminCode, "main"));
+        assertEquals(1, getStackLimit(jasminCode, "foo"));
+
+        // The value returned by foo is not used
+        assertTrue(jasminCode, jasminCode.contains("invokevirtual Calls/foo(II)I\n   pop\n"));
+    }
+
+    @Test
+    public void onlyValuesThatAreNotUsedArePopped() {
+        var jasminCode = generate("import io;\nArrays {\n" +
+                ".construct Arrays().V {\ninvokespecial(this, \"<init>\").V;\n}\n" +
+                ".method public static main(args.array.String).V {\n" +
+                "a.array.i32 :=.array.i32 new(array, 3.i32).array.i32;\n" +
+                "l.i32 :=.i32 arraylength(a.array.i32).i32;\n" +
+                "invokestatic(io, \"println\", l.i32).V;\n" +
+                "invokestatic(io, \"read\").i32;\n" +
+                "ret.V;\n}\n}");
+
+        assertEquals(1, getStackLimit(jasminCode, "main"));
+
+        // Only the value returned by read
+        assertEquals(jasminCode, 1, Pattern.compile("\\bpop\\b").matcher(jasminCode).results().count());
+        assertTrue(jasminCode, jasminCode.contains("invokestatic io/read()I\n   pop\n"));
+    }
+
+    @Test
+    public void comparisonsCanBeStored() {
+        var ollirResult = new OllirResult("import io;\nCompare {\n" +
+                ".construct Compare().V {\ninvokespecial(this, \"<init>\").V;\n}\n" +
+                ".method public static main(args.array.String).V {\n" +
+                "a.i32 :=.i32 1.i32;\n" +
+                "b.bool :=.bool a.i32 <.bool 10.i32;\n" +
+                "if (b.bool) goto L1;\n" +
+                "invokestatic(io, \"println\", 0.i32).V;\n" +
+                "goto L2;\n" +
+                "L1:\n" +
+                "invokestatic(io, \"println\", 1.i32).V;\n" +
+                "L2:\n" +
+                "ret.V;\n}\n}", Collections.emptyMap());
+        var jasminResult = new JasminBackendImpl().toJasmin(ollirResult);
+
+        assertEquals(2, getStackLimit(jasminResult.getJasminCode(), "main"));
+        assertEquals("1", jasminResult.runWithFullOutput().getStdOut().trim());
+    }
+
+    @Test
+    public void importsMatchTheWholeClassName() {
+        var jasminCode = generate("import foo.FooBar;\nimport baz.Bar;\nImports {\n" +
+                ".construct Imports().V {\ninvokespecial(this, \"<init>\").V;\n}\n" +
+                ".method public static main(args.array.String).V {\n" +
+                "invokestatic(Bar, \"run\").V;\n" +
+                "invokestatic(FooBar, \"run\").V;\n" +
+                "invokestatic(Other, \"run\").V;\n" +
+                "ret.V;\n}\n}");
+
+        assertTrue(jasminCode, jasminCode.contains("invokestatic baz/Bar/run()V"));
+        assertTrue(jasminCode, jasminCode.contains("invokestatic foo/FooBar/run()V"));
+        assertTrue(jasminCode, jasminCode.contains("invokestatic Other/run()V"));
+    }
+}
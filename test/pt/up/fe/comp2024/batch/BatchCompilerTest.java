@@ -0,0 +1,80 @@
+package pt.up.fe.comp2024.batch;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final String ARITHMETIC_FOLDER = "test/pt/up/fe/comp/cpf/4_jasmin/arithmetic";
+
+    @Test
+    public void collectsDirectory() {
+        var inputs = BatchCompiler.collectInputs(ARITHMETIC_FOLDER);
+
+        assertEquals(5, inputs.size());
+        assertTrue(inputs.stream().allMatch(file -> file.getName().endsWith(".jmm")));
+        assertEquals("Arithmetic_and.jmm", inputs.get(0).getName());
+    }
+
+    @Test
+    public void collectsGlob() {
+        var inputs = BatchCompiler.collectInputs(ARITHMETIC_FOLDER + "/Arithmetic_*.jmm");
+
+        assertEquals(3, inputs.size());
+    }
+
+    @Test
+    public void reportsEachFile() {
+        var config = CompilerConfig.parseArgs(new String[]{"-batch=" + ARITHMETIC_FOLDER, "-j=2"});
+        var ok = new File(ARITHMETIC_FOLDER, "Arithmetic_and.jmm");
+        var failing = new File("test/pt/up/fe/comp/cp2/semanticanalysis/VarNotDeclared.jmm");
+
+        var result = new BatchCompiler(config).compile(List.of(ok, failing));
+
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getNumFailures());
+        assertTrue(result.getEntries().get(0).isSuccess());
+        assertFalse(result.getEntries().get(1).isSuccess());
+        assertEquals(failing, result.getEntries().get(1).getFile());
+    }
+
+    @Test
+    public void keepsWhatIsEmittedWithEachFile() {
+        var config = CompilerConfig.parseArgs(new String[]{"-batch=" + ARITHMETIC_FOLDER, "-j=2", "-emit=ollir"});
+        var inputs = BatchCompiler.collectInputs(ARITHMETIC_FOLDER);
+
+        var out = System.out;
+        var printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        BatchResult result;
+        try {
+            result = new BatchCompiler(config).compile(inputs);
+        } finally {
+            System.setOut(out);
+        }
+
+        assertTrue(result.isSuccess());
+        var printedCode = printed.toString(StandardCharsets.UTF_8);
+
+        var summary = result.getSummary();
+        var lastIndex = -1;
+        for (var entry : result.getEntries()) {
+            var className = entry.getFile().getName().replace(".jmm", "");
+            assertTrue(entry.getEmitted(), entry.getEmitted().contains(className + " {"));
+            assertFalse(printedCode, printedCode.contains(className + " {"));
+
+            // Each output follows the line of its file
+            var index = summary.indexOf(entry + "\n" + entry.getEmitted());
+            assertTrue(summary, index > lastIndex);
+            lastIndex = index;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp2024.cache;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.comp2024.backend.BytecodeResult;
+import pt.up.fe.comp2024.parser.MappedCharStream;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class CompilationCacheTest {
+
+    private static final String INPUT = "test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm";
+    private static final String LOOPS_INPUT = "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm";
+
+    @Test
+    public void reusesUnchangedSources() throws IOException {
+        var cacheDir = Files.createTempDirectory("jmm-cache").toFile();
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-cache=" + cacheDir});
+        var code = SpecsIo.read(new File(INPUT));
+
+        var compiled = Launcher.compile(code, config);
+        var cache = CompilationCache.fromConfig(config).orElseThrow();
+        var key = cache.getKey(code, config);
+
+        var cached = cache.getJasmin(key, config).orElseThrow();
+        assertEquals(compiled.getJasminCode(), cached.getJasminCode());
+        assertEquals(compiled.getClassName(), cached.getClassName());
+
+        // Options that change the generated code change the key
+        var optimized = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-cache=" + cacheDir, "-o"});
+        assertNotEquals(key, cache.getKey(code, optimized));
+        assertNotEquals(key, cache.getKey(code + "\n", config));
+
+        // The mapped file is hashed as its code, and can still be read by the lexer afterwards
+        var bytes = MappedCharStream.map(new File(INPUT).toPath());
+        assertEquals(key, cache.getKey(bytes, config));
+        assertEquals(cache.getAstKey(code), cache.getAstKey(bytes));
+        assertEquals(0, bytes.position());
+
+        var stats = new CompilationStats(INPUT);
+        Launcher.compile(new File(INPUT).toPath(), config, stats);
+        assertEquals(1, stats.getCount("cacheHits"));
+
+        SpecsIo.deleteFolder(cacheDir);
+    }
+
+    @Test
+    public void keepsTheClassOfTheBytecodeBackend() throws IOException {
+        var cacheDir = Files.createTempDirectory("jmm-cache").toFile();
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + LOOPS_INPUT, "-cache=" + cacheDir, "-backend=bytecode"});
+        var code = SpecsIo.read(new File(LOOPS_INPUT));
+
+        var compiled = (BytecodeResult) Launcher.compile(code, config);
+
+        var stats = new CompilationStats(LOOPS_INPUT);
+        var cached = Launcher.compile(code, config, stats);
+        assertEquals(1, stats.getCount("cacheHits"));
+
+        // The cached class is the one of the bytecode backend, not one assembled from Jasmin code
+        assertTrue(cached instanceof BytecodeResult);
+        var classBytes = ((BytecodeResult) cached).getClassBytes();
+        assertArrayEquals(compiled.getClassBytes(), classBytes);
+        assertEquals(compiled.getClassName(), cached.getClassName());
+        assertEquals(52, ((classBytes[6] & 0xFF) << 8) | (classBytes[7] & 0xFF));
+        assertTrue(new String(classBytes, StandardCharsets.ISO_8859_1).contains("StackMapTable"));
+
+        // The backends do not share entries
+        var jasminConfig = CompilerConfig.parseArgs(new String[]{"-i=" + LOOPS_INPUT, "-cache=" + cacheDir});
+        var cache = CompilationCache.fromConfig(config).orElseThrow();
+        assertNotEquals(cache.getKey(code, config), cache.getKey(code, jasminConfig));
+
+        SpecsIo.deleteFolder(cacheDir);
+    }
+
+    @Test
+    public void evictsWhenFull() throws IOException {
+        var cacheDir = Files.createTempDirectory("jmm-cache").toFile();
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-cache=" + cacheDir, "-cache-size=0"});
+
+        Launcher.compile(SpecsIo.read(new File(INPUT)), config);
+
+        // A cache with size 0 cannot keep anything
+        assertEquals(0, cacheDir.listFiles().length);
+
+        SpecsIo.deleteFolder(cacheDir);
+    }
+}
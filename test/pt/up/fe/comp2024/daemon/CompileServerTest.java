@@ -0,0 +1,28 @@
+package pt.up.fe.comp2024.daemon;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompileServerTest {
+
+    @Test
+    public void compilesRequests() throws InterruptedException {
+        var server = new CompileServer(0, 2);
+        var serverThread = new Thread(server);
+        serverThread.start();
+
+        try {
+            var ok = CompilerConfig.parseArgs(new String[]{"-i=test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm"});
+            assertEquals(0, CompileClient.compile(server.getPort(), ok));
+
+            var failing = CompilerConfig.parseArgs(new String[]{"-i=test/pt/up/fe/comp/cp2/semanticanalysis/VarNotDeclared.jmm"});
+            assertEquals(1, CompileClient.compile(server.getPort(), failing));
+        } finally {
+            server.close();
+        }
+
+        serverThread.join(5000);
+    }
+}
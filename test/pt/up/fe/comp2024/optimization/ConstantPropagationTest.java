@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.BytecodeBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConstantPropagationTest {
+
+    private static final String OLLIR_DIR = "pt/up/fe/comp/cpf/4_jasmin/";
+
+    private static final String LOOP = """
+            import io;
+            class Loop {
+                public static void main(String[] args) {
+                    int a;
+                    int b;
+                    boolean c;
+                    a = 2;
+                    b = a * 3 + 4;
+                    c = b < 11 && true;
+                    while (a < b) {
+                        a = a + 3;
+                    }
+                    io.println(a);
+                    io.println(b);
+                }
+            }
+            """;
+
+    @Test
+    public void foldsConstantsButNotLoopVariables() {
+        var original = TestUtils.optimize(LOOP, Collections.emptyMap());
+        var optimized = TestUtils.optimize(LOOP, Map.of("optimize", "true"));
+
+        // The bytecode backend is used since it also supports comparisons outside of branches
+        var expected = new BytecodeBackendImpl().toJasmin(original).run();
+        var result = new BytecodeBackendImpl().toJasmin(optimized);
+        var output = result.run();
+        assertEquals(expected, output);
+        assertTrue(output, output.replace("\r\n", "\n").startsWith("11\n10\n"));
+
+        // 'b' is folded to 10, 'a' changes inside the loop
+        var jasminCode = result.getJasminCode();
+        assertTrue(jasminCode, jasminCode.contains("bipush 10"));
+        assertFalse(jasminCode, jasminCode.contains("imul"));
+        assertTrue(jasminCode, jasminCode.contains("iadd") || jasminCode.contains("iinc"));
+    }
+
+    @Test
+    public void optimizedCodeRunsLikeOriginal() {
+        for (var resource : new String[]{"control_flow/IfWhileNested.ollir", "control_flow/SwitchStat.ollir",
+                "arithmetic/Arithmetic_not.ollir", "arrays/ComplexArrayAccess.ollir", "calls/ConditionArgsFuncCall.ollir"}) {
+
+            var original = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+            var expected = new JasminBackendImpl().toJasmin(original).run();
+
+            var optimized = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+            new ConstantPropagation().optimize(optimized.getOllirClass());
+            assertEquals(resource, expected, new JasminBackendImpl().toJasmin(optimized).run());
+
+            var bytecode = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+            new ConstantPropagation().optimize(bytecode.getOllirClass());
+            assertEquals(resource, expected, new BytecodeBackendImpl().toJasmin(bytecode).run());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.UnaryOpInstruction;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class OllirBuilderTest {
+
+    private static final String[] RESOURCES = {
+            "pt/up/fe/comp/cp2/ollir/CompileBasic.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileAssignment.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileMethodInvocation.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/arithmetic/Arithmetic_and.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/arithmetic/Arithmetic_not.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/control_flow/IfElseInMain.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/control_flow/SwitchStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/calls/ConditionArgsFuncCall.jmm",
+            "pt/up/fe/comp/cpf/2_semantic_analysis/lookup/VarLookup_Field.jmm",
+            "pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm",
+    };
+
+    // Code that the generated OLLIR text does not support, so the class can only be built
+    private static final String[] BUILT_ONLY_RESOURCES = {
+            "pt/up/fe/comp/cpf/3_ollir/arrays/ArrayInit.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/arrays/ArrayInitialization.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/arrays/ArrayVarArgs.jmm",
+            "pt/up/fe/comp/cpf/3_ollir/basic/BasicMethodsArray.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/limits/LocalLimits.jmm",
+            "pt/up/fe/comp/cp2/semanticanalysis/CallToMethodAssumedInImport.jmm",
+    };
+
+    private static final String NOT_CODE = """
+            class Not {
+                public boolean not(boolean a) {
+                    boolean b;
+                    b = !a;
+                    return b;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static OllirResult parseGeneratedCode(JmmSemanticsResult semantics) {
+        var code = new OllirCode();
+        new OllirGeneratorVisitor(semantics.getSymbolTable()).visit(semantics.getRootNode(), code);
+        return new OllirResult(semantics, code.toString(), Collections.emptyList());
+    }
+
+    @Test
+    public void buildsTheSameClassAsParsingTheCode() {
+        for (var resource : RESOURCES) {
+            var semantics = TestUtils.analyse(SpecsIo.getResource(resource));
+
+            var parsed = parseGeneratedCode(semantics);
+            var built = new OllirBuilder(semantics.getSymbolTable(), null).build(semantics.getRootNode());
+
+            assertEquals(resource, OllirDump.dump(parsed.getOllirClass()), OllirDump.dump(built));
+        }
+    }
+
+    @Test
+    public void printedCodeIsParsedToTheSameClass() {
+        for (var resource : concat(RESOURCES, BUILT_ONLY_RESOURCES)) {
+            var semantics = TestUtils.analyse(SpecsIo.getResource(resource));
+
+            var built = new OllirBuilder(semantics.getSymbolTable(), null).build(semantics.getRootNode());
+            var parsed = new OllirResult(semantics, OllirPrinter.print(built), Collections.emptyList());
+
+            assertEquals(resource, OllirDump.dump(built), OllirDump.dump(parsed.getOllirClass()));
+        }
+    }
+
+    @Test
+    public void codeIsWrittenFromTheClassOnlyWhenAskedFor() {
+        var semantics = TestUtils.analyse(SpecsIo.getResource(RESOURCES[3]));
+
+        var result = TestUtils.getJmmOptimization().toOllir(semantics);
+
+        assertTrue(result instanceof LazyOllirResult);
+        assertEquals(OllirPrinter.print(result.getOllirClass()), result.getOllirCode());
+    }
+
+    @Test
+    public void negationUsesItsOperand() {
+        var semantics = TestUtils.analyse(NOT_CODE);
+
+        var built = new OllirBuilder(semantics.getSymbolTable(), null).build(semantics.getRootNode());
+        var parsed = parseGeneratedCode(semantics);
+
+        for (var ollirClass : List.of(built, parsed.getOllirClass())) {
+            var method = ollirClass.getMethods().stream()
+                    .filter(candidate -> candidate.getMethodName().equals("not"))
+                    .findFirst()
+                    .orElseThrow();
+            var negation = method.getInstructions().stream()
+                    .filter(instruction -> instruction instanceof AssignInstruction assign
+                            && assign.getRhs() instanceof UnaryOpInstruction)
+                    .map(instruction -> (UnaryOpInstruction) ((AssignInstruction) instruction).getRhs())
+                    .findFirst()
+                    .orElseThrow();
+
+            assertTrue(negation.getOperand() instanceof Operand);
+            assertEquals("a", ((Operand) negation.getOperand()).getName());
+        }
+    }
+
+    @Test
+    public void arraysAndVarArgsRun() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayVarArgs.jmm");
+
+        // The three arguments of the first call are put in an array
+        var output = TestUtils.backend(code).runWithFullOutput().getStdOut();
+        assertEquals(List.of("1", "4"), output.lines().toList());
+    }
+
+    @Test
+    public void statsDoNotWriteTheCode() {
+        var result = TestUtils.optimize(SpecsIo.getResource(RESOURCES[4]), Map.of());
+
+        var stats = new CompilationStats("Arithmetic_and.jmm");
+        stats.countOllir(result);
+
+        assertFalse(((LazyOllirResult) result).hasOllirCode());
+        assertEquals(0, stats.getCount("ollirBytes"));
+        assertTrue(stats.getCount("ollirInstructions") > 0);
+    }
+
+    private static List<String> concat(String[] first, String[] second) {
+        return Stream.concat(Arrays.stream(first), Arrays.stream(second)).toList();
+    }
+}
@@ -0,0 +1,44 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class OllirCodeTest {
+
+    @Test
+    public void appendsTextAndLinkedCodeInOrder() {
+        var method = new OllirCode().append("ret.V;\n");
+
+        var code = new OllirCode().append(".method foo().V {\n").append(method).append("}\n");
+
+        assertEquals(".method foo().V {\nret.V;\n}\n", code.toString());
+        assertEquals("ret.V;\n", method.toString());
+        assertEquals(code.toString().length(), code.length());
+    }
+
+    @Test
+    public void argumentsAreComputedBeforeTheCall() {
+        var ollir = TestUtils.optimize("""
+                import io;
+                class Args {
+                    public int foo(int a) {
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                        Args x;
+                        x = new Args();
+                        io.println(x.foo(1 + 2));
+                    }
+                }
+                """, Collections.emptyMap()).getOllirCode();
+
+        var add = ollir.indexOf("+.i32");
+        var call = ollir.indexOf("\"foo\"");
+        assertTrue(add >= 0 && call >= 0);
+        assertTrue(ollir.lastIndexOf("\n", add) < ollir.lastIndexOf("\n", call));
+    }
+}
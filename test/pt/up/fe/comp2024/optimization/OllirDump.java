@@ -0,0 +1,118 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Describes every field of an OLLIR class, its methods and their instructions as text, so that two classes can be
+ * compared. The control flow graph is not described, since it is built on demand.
+ */
+class OllirDump {
+
+    private static final Set<String> IGNORED = Set.of("id", "succNodes", "predNodes", "beginNode", "endNode",
+            "cfgInitialized", "labelsMap", "ollirClass", "methodLabels");
+
+    private final StringBuilder dump;
+
+    private OllirDump() {
+        dump = new StringBuilder();
+    }
+
+    static String dump(ClassUnit classUnit) {
+        var dumper = new OllirDump();
+        dumper.dumpObject(classUnit, 0);
+        return dumper.dump.toString();
+    }
+
+    private void dumpObject(Object object, int indent) {
+        if (object == null || object instanceof String || object instanceof Number || object instanceof Boolean
+                || object instanceof Enum) {
+            dump.append(object).append("\n");
+            return;
+        }
+
+        if (object instanceof Collection<?> collection) {
+            dump.append("[\n");
+            for (var element : collection) {
+                line(indent + 1);
+                dumpObject(element, indent + 1);
+            }
+            line(indent);
+            dump.append("]\n");
+            return;
+        }
+
+        if (object instanceof Map<?, ?> map) {
+            dump.append("{\n");
+            var sorted = new TreeMap<String, Object>();
+            map.forEach((key, value) -> sorted.put(String.valueOf(key), value));
+            for (var entry : sorted.entrySet()) {
+                line(indent + 1);
+                dump.append(entry.getKey()).append(" = ");
+                dumpObject(entry.getValue(), indent + 1);
+            }
+            line(indent);
+            dump.append("}\n");
+            return;
+        }
+
+        if (object instanceof int[] array) {
+            dump.append(Arrays.toString(array)).append("\n");
+            return;
+        }
+
+        dump.append(object.getClass().getSimpleName()).append("\n");
+        for (var field : getFields(object.getClass())) {
+            line(indent + 1);
+            dump.append(field.getName()).append(": ");
+            try {
+                field.setAccessible(true);
+                dumpObject(field.get(object), indent + 1);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // Labels are described by the position of the instruction they point to
+        if (object instanceof Method method) {
+            line(indent + 1);
+            dump.append("labels: ");
+            var labels = new TreeMap<String, Integer>();
+            method.getLabels().forEach((label, inst) -> labels.put(label, indexOf(method, inst)));
+            dump.append(labels).append("\n");
+        }
+    }
+
+    private static int indexOf(Method method, Instruction inst) {
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) == inst) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static List<Field> getFields(Class<?> type) {
+        var fields = new ArrayList<Field>();
+        for (var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (var field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !IGNORED.contains(field.getName())) {
+                    fields.add(field);
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    private void line(int indent) {
+        dump.append("  ".repeat(indent));
+    }
+}
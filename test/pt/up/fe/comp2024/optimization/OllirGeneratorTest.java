@@ -0,0 +1,76 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.CodeTestUtils;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OllirGeneratorTest {
+
+    private static final String BODY = """
+            int b;
+            b = a * 2;
+            if (b < a) {
+                b = a;
+            } else {
+                b = b - 1;
+            }
+            while (a < b) {
+                a = a + 1;
+            }
+            return a * b;
+            """;
+
+    private static String generateClass(int numMethods) {
+        return CodeTestUtils.generateClass(numMethods, "", i -> BODY);
+    }
+
+    /**
+     * Uses the visitor directly, since {@link JmmOptimizationImpl#toOllir} builds the class with {@link OllirBuilder}.
+     */
+    private static String toOllir(String code, String threads) {
+        var config = Map.of("threads", threads);
+        var semantics = TestUtils.analyse(code, config);
+
+        var ollirCode = new OllirCode();
+        var pool = CompilerConfig.getMethodPool(config).orElse(null);
+        new OllirGeneratorVisitor(semantics.getSymbolTable(), pool).visit(semantics.getRootNode(), ollirCode);
+
+        return ollirCode.toString();
+    }
+
+    @Test
+    public void outputIsTheSameWithAnyNumberOfThreads() {
+        var code = generateClass(40);
+
+        var sequential = toOllir(code, "1");
+        for (var threads : new String[]{"1", "2", "8"}) {
+            assertEquals(sequential, toOllir(code, threads));
+        }
+    }
+
+    @Test
+    public void methodsAreInDeclarationOrder() {
+        var ollir = toOllir(generateClass(20), "4");
+
+        for (int i = 1; i < 20; i++) {
+            assertTrue(ollir.indexOf(" m" + (i - 1) + "(") < ollir.indexOf(" m" + i + "("));
+        }
+    }
+
+    @Test
+    public void tempsAndLabelsAreNumberedPerMethod() {
+        var ollir = toOllir(generateClass(2), "1");
+
+        // Both methods have the same body, so they only differ in the name
+        var m0 = ollir.substring(ollir.indexOf(".method public m0("), ollir.indexOf(".method public m1("));
+        var m1 = ollir.substring(ollir.indexOf(".method public m1("), ollir.indexOf(".construct"));
+
+        assertTrue(m0.contains("tmp0"));
+        assertEquals(m0.replace("m0(", "m1("), m1);
+    }
+}
@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.backend.BytecodeBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RegisterAllocatorTest {
+
+    private static final String REGALLOC = "pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm";
+    private static final String OLLIR_DIR = "pt/up/fe/comp/cpf/4_jasmin/";
+
+    private static OllirResult allocate(String ollirResource, int registers) {
+        var ollirResult = new OllirResult(SpecsIo.getResource(ollirResource), Collections.emptyMap());
+        ollirResult.getReports().addAll(new RegisterAllocator(registers).allocate(ollirResult.getOllirClass()));
+        return ollirResult;
+    }
+
+    @Test
+    public void minimizesRegisters() {
+        var result = TestUtils.backend(SpecsIo.getResource(REGALLOC), Map.of("registerAllocation", "0"));
+
+        // a, b, c and d are never alive at the same time, and 'arg' is never used
+        var jasminCode = result.getJasminCode();
+        var method = jasminCode.substring(jasminCode.indexOf("soManyRegisters"));
+        assertTrue(method, method.contains(".limit locals 2"));
+    }
+
+    @Test
+    public void reportsMinimumRegisters() {
+        var result = TestUtils.optimize(SpecsIo.getResource(REGALLOC), Map.of("registerAllocation", "1"));
+
+        var errors = result.getReports().stream().filter(report -> report.getType() == ReportType.ERROR).toList();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage(), errors.get(0).getMessage().contains("needs at least 2 registers"));
+    }
+
+    @Test
+    public void allocatedCodeRunsLikeOriginal() {
+        for (var resource : new String[]{"control_flow/IfWhileNested.ollir", "control_flow/SwitchStat.ollir",
+                "arrays/ComplexArrayAccess.ollir", "arrays/ArrayVarArgs.ollir", "limits/LocalLimits.ollir"}) {
+
+            var original = new OllirResult(SpecsIo.getResource(OLLIR_DIR + resource), Collections.emptyMap());
+            var expected = new JasminBackendImpl().toJasmin(original).run();
+
+            var allocated = allocate(OLLIR_DIR + resource, 0);
+            assertTrue(resource, allocated.getReports().isEmpty());
+            assertEquals(resource, expected, new JasminBackendImpl().toJasmin(allocated).run());
+
+            // The bytecode backend writes frames, which must agree with the shared registers
+            assertEquals(resource, expected, new BytecodeBackendImpl().toJasmin(allocate(OLLIR_DIR + resource, 0)).run());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.stats.CompilationStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class JmmParserImplTest {
+
+    private static final String[] RESOURCES = {
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileMethodInvocation.jmm",
+    };
+
+    private static final String INVALID_CODE = """
+            class A {
+                public int foo() {
+                    return 1 +;
+                }
+            }
+            """;
+
+    private static JmmParserResult parse(String code, CompilationStats stats) {
+        return stats.collect(() -> new JmmParserImpl().parse(code, Collections.emptyMap()));
+    }
+
+    private static String parseTree(String resource) {
+        return new JmmParserImpl().parse(SpecsIo.getResource(resource), Collections.emptyMap()).getRootNode().toTree();
+    }
+
+    @Test
+    public void validCodeIsParsedOnce() {
+        var stats = new CompilationStats("valid");
+
+        var result = parse(SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm"), stats);
+
+        TestUtils.noErrors(result);
+        assertNotNull(result.getRootNode());
+        assertEquals(0, stats.getCount("llParses"));
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedByTheSecondParse() {
+        var stats = new CompilationStats("invalid");
+
+        var result = parse(INVALID_CODE, stats);
+
+        assertNull(result.getRootNode());
+        assertEquals(1, stats.getCount("llParses"));
+
+        var errors = result.getReports().stream().filter(report -> report.getStage() == Stage.SYNTATIC).toList();
+        assertFalse(errors.isEmpty());
+        assertEquals(3, errors.get(0).getLine());
+    }
+
+    @Test
+    public void filesParsedOnTheSameThreadHaveIndependentTrees() {
+        // Trees of parsers that were never used before, in another thread
+        var expected = CompletableFuture.supplyAsync(() -> List.of(
+                        parseTree(RESOURCES[0]),
+                        parseTree(RESOURCES[1])))
+                .join();
+
+        // Nodes are only read from the parse trees after both files were parsed by the same parser
+        var first = new JmmParserImpl().parse(SpecsIo.getResource(RESOURCES[0]), Collections.emptyMap()).getRootNode();
+        var second = new JmmParserImpl().parse(SpecsIo.getResource(RESOURCES[1]), Collections.emptyMap()).getRootNode();
+
+        assertEquals(expected.get(0), first.toTree());
+        assertEquals(expected.get(1), second.toTree());
+    }
+
+    @Test
+    public void validCodeIsParsedAfterAFailedParse() {
+        parse(INVALID_CODE, new CompilationStats("invalid"));
+
+        var stats = new CompilationStats("valid");
+        var result = parse(SpecsIo.getResource(RESOURCES[0]), stats);
+
+        TestUtils.noErrors(result);
+        assertEquals(parseTree(RESOURCES[0]), result.getRootNode().toTree());
+        assertEquals(0, stats.getCount("llParses"));
+    }
+
+    @Test
+    public void warmUpAddsDfaStates() {
+        JmmParserImpl.clearDfaCache();
+        var emptySize = JmmParserImpl.getDfaSize();
+
+        var size = JmmParserImpl.warmUp(List.of(SpecsIo.getResource(RESOURCES[0])));
+
+        assertTrue(size > emptySize);
+        assertEquals(size, JmmParserImpl.getDfaSize());
+    }
+
+    @Test
+    public void codeIsParsedAfterClearingTheDfa() {
+        var size = JmmParserImpl.warmUp(List.of(SpecsIo.getResource(RESOURCES[0]), SpecsIo.getResource(RESOURCES[1])));
+
+        JmmParserImpl.clearDfaCache();
+        assertTrue(JmmParserImpl.getDfaSize() < size);
+
+        var result = parse(SpecsIo.getResource(RESOURCES[1]), new CompilationStats("cleared"));
+        TestUtils.noErrors(result);
+        assertNotNull(result.getRootNode());
+    }
+}
@@ -0,0 +1,61 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.AstSnapshot;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.ast.AstTestUtils.RESOURCES;
+import static pt.up.fe.comp2024.ast.AstTestUtils.assertSameTree;
+
+public class LazyJmmNodeTest {
+
+    @Test
+    public void viewsTheSameTreeAsTheConverter() {
+        for (var resource : RESOURCES) {
+            var parser = new JavammParser(new CommonTokenStream(new JavammLexer(
+                    new ANTLRInputStream(SpecsIo.getResource(resource)))));
+            var tree = parser.program();
+
+            assertSameTree(AntlrToJmmNodeConverter.convert(tree, parser), LazyJmmNode.wrap(tree, parser));
+        }
+    }
+
+    @Test
+    public void snapshotOfTheParseTreeIsTheSameTree() {
+        for (var resource : RESOURCES) {
+            var parser = new JavammParser(new CommonTokenStream(new JavammLexer(
+                    new ANTLRInputStream(SpecsIo.getResource(resource)))));
+            var tree = parser.program();
+
+            var snapshot = LazyJmmNode.snapshot(tree).orElseThrow();
+
+            assertSameTree(AntlrToJmmNodeConverter.convert(tree, parser), AstSnapshot.read(snapshot));
+        }
+    }
+
+    @Test
+    public void treeCanBeChanged() {
+        var root = new JmmParserImpl().parse(SpecsIo.getResource(RESOURCES.get(0)), Collections.emptyMap()).getRootNode();
+        assertTrue(root instanceof LazyJmmNode);
+
+        var classDecl = root.getJmmChild(root.getNumChildren() - 1);
+        var method = classDecl.getJmmChild(classDecl.getNumChildren() - 1);
+        var numMethods = classDecl.getNumChildren();
+
+        method.detach();
+        assertEquals(numMethods - 1, classDecl.getNumChildren());
+        assertNull(method.getParent());
+
+        classDecl.add(method, 0);
+        assertSame(method, classDecl.getJmmChild(0));
+        assertSame(classDecl, method.getParent());
+    }
+}
@@ -0,0 +1,96 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MappedCharStreamTest {
+
+    private static final String RESOURCE = "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String code) throws IOException {
+        var file = folder.newFile().toPath();
+        Files.writeString(file, code, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void readsLikeAnInputStream() throws IOException {
+        var code = "class A {}\n";
+        var mapped = MappedCharStream.open(write(code));
+        var expected = new ANTLRInputStream(code);
+
+        assertTrue(mapped instanceof MappedCharStream);
+        assertEquals(expected.size(), mapped.size());
+        for (int i = 0; i <= code.length(); i++) {
+            assertEquals(expected.LA(1), mapped.LA(1));
+            assertEquals(expected.LA(-1), mapped.LA(-1));
+            if (i < code.length()) {
+                expected.consume();
+                mapped.consume();
+            }
+        }
+
+        assertEquals(IntStream.EOF, mapped.LA(1));
+        assertEquals("A {", mapped.getText(Interval.of(6, 8)));
+
+        mapped.seek(2);
+        assertEquals('a', mapped.LA(1));
+    }
+
+    @Test
+    public void decodesFilesWithOtherCharacters() throws IOException {
+        var code = "class A {} // ação\n";
+
+        var input = MappedCharStream.open(write(code));
+
+        assertFalse(input instanceof MappedCharStream);
+        assertEquals(code, input.getText(Interval.of(0, input.size() - 1)));
+    }
+
+    @Test
+    public void parsesFilesLikeCode() throws IOException {
+        var code = SpecsIo.getResource(RESOURCE);
+        var parser = new JmmParserImpl();
+
+        var fromCode = parser.parse(code, Collections.emptyMap());
+        var fromFile = parser.parse(write(code), Collections.emptyMap());
+
+        TestUtils.noErrors(fromFile);
+        assertEquals(fromCode.getRootNode().toTree(), fromFile.getRootNode().toTree());
+    }
+
+    @Test
+    public void treeDoesNotReadTheFileAfterParsing() throws IOException {
+        var code = SpecsIo.getResource(RESOURCE);
+        var expected = new JmmParserImpl().parse(code, Collections.emptyMap()).getRootNode().toTree();
+
+        // Same length, so a tree that read the mapped file would see the new text
+        var rewritten = write(code);
+        var fromRewritten = new JmmParserImpl().parse(rewritten, Collections.emptyMap()).getRootNode();
+        Files.writeString(rewritten, code.replaceAll("[A-Za-z]", "x"), StandardCharsets.UTF_8);
+        assertEquals(expected, fromRewritten.toTree());
+
+        // Reading a mapped file past its end would fail
+        var truncated = write(code);
+        var fromTruncated = new JmmParserImpl().parse(truncated, Collections.emptyMap()).getRootNode();
+        Files.writeString(truncated, "", StandardCharsets.UTF_8);
+        assertEquals(expected, fromTruncated.toTree());
+    }
+}
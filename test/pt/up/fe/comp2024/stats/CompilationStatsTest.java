@@ -0,0 +1,51 @@
+package pt.up.fe.comp2024.stats;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class CompilationStatsTest {
+
+    private static final String INPUT = "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm";
+
+    @Test
+    public void recordsStagesAndMethods() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT, "-stats"});
+        var stats = new CompilationStats(INPUT);
+
+        Launcher.compile(SpecsIo.read(new File(INPUT)), config, stats);
+
+        var json = JsonParser.parseString(stats.toJson()).getAsJsonObject();
+
+        var stages = json.getAsJsonArray("stages");
+        assertEquals(5, stages.size());
+        assertEquals("parse", stages.get(0).getAsJsonObject().get("stage").getAsString());
+        assertEquals("jasmin", stages.get(4).getAsJsonObject().get("stage").getAsString());
+
+        // 'func' and 'main', in the OLLIR and Jasmin stages
+        assertEquals(4, json.getAsJsonArray("methods").size());
+
+        var counts = json.getAsJsonObject("counts");
+        assertEquals(2, counts.get("methods").getAsLong());
+        assertEquals(2, stats.getCount("methods"));
+        assertEquals(0, stats.getCount("unknown"));
+        assertTrue(counts.get("astNodes").getAsLong() > 0);
+        assertTrue(counts.get("jasminBytes").getAsLong() > 0);
+    }
+
+    @Test
+    public void disabledRecordsNothing() {
+        var stats = CompilationStats.disabled();
+
+        assertEquals(42, (int) stats.measureStage("parse", () -> 42));
+        stats.count("astNodes", 1);
+
+        assertFalse(stats.isEnabled());
+    }
+}
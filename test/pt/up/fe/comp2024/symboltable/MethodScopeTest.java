@@ -0,0 +1,60 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import static org.junit.Assert.*;
+
+public class MethodScopeTest {
+
+    private static final String CODE = """
+            import io;
+            class Scopes {
+                int a;
+                boolean b;
+                public int foo(int x, int b) {
+                    int a;
+                    a = x + b;
+                    return a;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static JmmSymbolTable getTable() {
+        return JmmSymbolTableBuilder.build(TestUtils.parse(CODE).getRootNode());
+    }
+
+    @Test
+    public void resolvesWithShadowing() {
+        var scope = getTable().getScope("foo");
+
+        var a = scope.resolve("a").orElseThrow();
+        assertEquals(ResolvedSymbol.Kind.LOCAL, a.getKind());
+
+        var b = scope.resolve("b").orElseThrow();
+        assertEquals(ResolvedSymbol.Kind.PARAMETER, b.getKind());
+        assertEquals(1, b.getIndex());
+        assertEquals(new Type("int", false), b.getSymbol().getType());
+
+        assertEquals(ResolvedSymbol.Kind.IMPORT, scope.resolve("io").orElseThrow().getKind());
+        assertTrue(scope.resolve("c").isEmpty());
+
+        // Fields are visible where they are not hidden
+        var field = getTable().getScope("main").resolve("b").orElseThrow();
+        assertEquals(ResolvedSymbol.Kind.FIELD, field.getKind());
+        assertEquals(new Type("boolean", false), field.getSymbol().getType());
+    }
+
+    @Test
+    public void scopesAndFieldsAreBuiltOnce() {
+        var table = getTable();
+
+        assertSame(table.getScope("foo"), table.getScope("foo"));
+        assertSame(table.getScope("foo"), MethodScope.get(table, "foo"));
+        assertSame(table.getFields(), table.getFields());
+        assertEquals(2, table.getFields().size());
+    }
+}
@@ -0,0 +1,109 @@
+package pt.up.fe.comp2024.watch;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.batch.BatchResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WatchCompilerTest {
+
+    private static final String MAIN = "public static void main(String[] args) { }";
+
+    private static Path writeClass(Path dir, String name, String imports) throws IOException {
+        return Files.writeString(dir.resolve(name + ".jmm"), imports + "class " + name + " { " + MAIN + " }");
+    }
+
+    private static List<String> getFileNames(BatchResult result) {
+        return result.getEntries().stream().map(entry -> entry.getFile().getName()).toList();
+    }
+
+    @Test
+    public void compilesFilesThatImportChangedClasses() throws IOException {
+        var dir = Files.createTempDirectory("jmm-watch");
+        var a = writeClass(dir, "A", "");
+        var b = writeClass(dir, "B", "import A;\n");
+        writeClass(dir, "C", "");
+
+        var config = CompilerConfig.parseArgs(new String[]{"-watch=" + dir});
+        try (var watch = new WatchCompiler(config, result -> {
+        })) {
+            assertEquals(3, watch.compile(List.of(a, b, dir.resolve("C.jmm"))).getEntries().size());
+
+            assertEquals(List.of("A.jmm", "B.jmm"), getFileNames(watch.compile(List.of(a))));
+            assertEquals(List.of("B.jmm"), getFileNames(watch.compile(List.of(b))));
+
+            // Deleted files are not compiled, but the files that import them are
+            Files.delete(a);
+            assertEquals(List.of("B.jmm"), getFileNames(watch.compile(List.of(a))));
+        }
+
+        SpecsIo.deleteFolder(dir.toFile());
+    }
+
+    @Test
+    public void compilesChangedFiles() throws IOException, InterruptedException {
+        var dir = Files.createTempDirectory("jmm-watch");
+        writeClass(dir, "A", "");
+        writeClass(dir, "B", "");
+
+        BlockingQueue<BatchResult> results = new LinkedBlockingQueue<>();
+        var config = CompilerConfig.parseArgs(new String[]{"-watch=" + dir});
+        var watch = new WatchCompiler(config, results::add);
+        var thread = new Thread(watch);
+        thread.start();
+
+        try {
+            var initial = results.poll(30, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(List.of("A.jmm", "B.jmm"), getFileNames(initial));
+
+            writeClass(dir, "B", "import A;\n");
+
+            var changed = results.poll(30, TimeUnit.SECONDS);
+            assertNotNull(changed);
+            assertEquals(List.of("B.jmm"), getFileNames(changed));
+            assertTrue(changed.isSuccess());
+        } finally {
+            watch.close();
+        }
+
+        thread.join(10_000);
+        assertFalse(thread.isAlive());
+
+        SpecsIo.deleteFolder(dir.toFile());
+    }
+
+    @Test
+    public void changedFilesAreParsedOnce() throws IOException {
+        var dir = Files.createTempDirectory("jmm-watch");
+        var cacheDir = Files.createTempDirectory("jmm-cache");
+        var a = writeClass(dir, "A", "");
+
+        var withoutCache = CompilerConfig.parseArgs(new String[]{"-watch=" + dir, "-stats"});
+        var withCache = CompilerConfig.parseArgs(new String[]{"-watch=" + dir, "-cache=" + cacheDir, "-stats"});
+        for (var config : List.of(withoutCache, withCache)) {
+            try (var watch = new WatchCompiler(config, result -> {
+            })) {
+                var stats = watch.compile(List.of(a)).getStats();
+
+                // The AST of the file was kept when its class was read
+                assertEquals(1, stats.size());
+                assertEquals(1, stats.get(0).getCount("reusedAsts"));
+                assertEquals(0, stats.get(0).getCount("astCacheHits"));
+            }
+        }
+
+        SpecsIo.deleteFolder(dir.toFile());
+        SpecsIo.deleteFolder(cacheDir.toFile());
+    }
+}